@@ -14,6 +14,9 @@ public class MessageConstant {
     public static final String CATEGORY_BE_RELATED_BY_SETMEAL = "当前分类关联了套餐,不能删除";
     public static final String CATEGORY_BE_RELATED_BY_DISH = "当前分类关联了菜品,不能删除";
     public static final String SHOPPING_CART_IS_NULL = "购物车数据为空，不能下单";
+    public static final String REPORT_DATE_REQUIRED = "开始日期和结束日期不能为空";
+    public static final String REPORT_DATE_RANGE_INVALID = "开始日期不能晚于结束日期";
+    public static final String REPORT_DATE_RANGE_TOO_LONG = "导出的日期范围过长";
     public static final String ADDRESS_BOOK_IS_NULL = "用户地址为空，不能下单";
     public static final String LOGIN_FAILED = "登录失败";
     public static final String UPLOAD_FAILED = "文件上传失败";
@@ -24,5 +27,8 @@ public class MessageConstant {
     public static final String DISH_BE_RELATED_BY_SETMEAL = "当前菜品关联了套餐,不能删除";
     public static final String ORDER_STATUS_ERROR = "订单状态错误";
     public static final String ORDER_NOT_FOUND = "订单不存在";
+    public static final String PAGE_CURSOR_INVALID = "分页游标无效";
+    public static final String CART_ITEM_NOT_ON_SALE = "菜品或套餐已停售，不能加入购物车";
+    public static final String ORDER_ITEM_NOT_ON_SALE = "购物车中包含已停售的菜品或套餐，不能下单";
 
 }
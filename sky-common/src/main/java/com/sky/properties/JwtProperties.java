@@ -23,4 +23,9 @@ public class JwtProperties {
     private long userTtl;
     private String userTokenName;
 
+    /**
+     * 每个端最多缓存的已校验令牌数
+     */
+    private long tokenCacheSize = 10000;
+
 }
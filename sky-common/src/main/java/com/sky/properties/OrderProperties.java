@@ -0,0 +1,24 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order")
+@Data
+public class OrderProperties {
+
+    /**
+     * 每单配送费，与小程序端展示的金额一致
+     */
+    private BigDecimal deliveryFee = BigDecimal.valueOf(6);
+
+    /**
+     * 每份菜品或套餐的打包费
+     */
+    private int packFeePerItem = 1;
+
+}
@@ -0,0 +1,22 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.redis-codec")
+@Data
+public class RedisCodecProperties {
+
+    /**
+     * 缓存值的编码方式：smile(二进制json)、jdk(java序列化)
+     */
+    private String codec = "smile";
+
+    /**
+     * 编码后超过该字节数时进行压缩，小于等于0时不压缩
+     */
+    private int compressThreshold = 1024;
+
+}
@@ -0,0 +1,22 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.shopping-cart")
+@Data
+public class ShoppingCartProperties {
+
+    /**
+     * 是否将redis中的购物车数据异步写回shopping_cart表，关闭时购物车只保存在redis中
+     */
+    private boolean writeBehind = false;
+
+    /**
+     * 购物车最后一次修改后在redis中保留的天数
+     */
+    private int ttlDays = 7;
+
+}
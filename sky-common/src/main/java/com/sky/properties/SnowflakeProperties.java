@@ -0,0 +1,22 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.snowflake")
+@Data
+public class SnowflakeProperties {
+
+    /**
+     * 当前节点的机器id(0~1023)，集群部署时每个节点必须不同，不配置时从redis租用
+     */
+    private Long workerId;
+
+    /**
+     * 允许的最大时钟回拨毫秒数，回拨在此范围内时沿用上次的时间戳继续生成
+     */
+    private long maxBackwardMillis = 5000;
+
+}
@@ -0,0 +1,99 @@
+package com.sky.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 雪花算法id生成器
+ * id结构: 1位符号位 + 41位毫秒时间戳(相对EPOCH) + 10位机器id + 12位序列号
+ * 通过CAS维护"时间戳+序列号"状态，无锁且同一节点内单调递增
+ */
+@Slf4j
+public class SnowflakeIdGenerator {
+
+    //起始时间 2023-01-01 00:00:00 UTC
+    public static final long EPOCH = 1672531200000L;
+
+    private static final int WORKER_ID_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+
+    public static final long MAX_WORKER_ID = (1L << WORKER_ID_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final int WORKER_ID_SHIFT = SEQUENCE_BITS;
+    private static final int TIMESTAMP_SHIFT = SEQUENCE_BITS + WORKER_ID_BITS;
+
+    private final long workerId;
+    private final long maxBackwardMillis;
+
+    //高位为上次生成id的时间戳(相对EPOCH)，低12位为该毫秒内的序列号
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdGenerator(long workerId, long maxBackwardMillis) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("workerId必须在0~" + MAX_WORKER_ID + "之间: " + workerId);
+        }
+        this.workerId = workerId;
+        this.maxBackwardMillis = maxBackwardMillis;
+    }
+
+    /**
+     * 生成下一个id
+     *
+     * @return
+     */
+    public long nextId() {
+        while (true) {
+            long current = state.get();
+            long lastTimestamp = current >>> SEQUENCE_BITS;
+            long now = currentTimeMillis() - EPOCH;
+
+            long next;
+            if (now > lastTimestamp) {
+                //进入新的毫秒，序列号从0开始
+                next = now << SEQUENCE_BITS;
+            } else {
+                //同一毫秒内，或者时钟发生了回拨
+                if (lastTimestamp - now > maxBackwardMillis) {
+                    throw new IllegalStateException("时钟回拨" + (lastTimestamp - now) + "毫秒，拒绝生成id");
+                }
+                if ((current & SEQUENCE_MASK) == SEQUENCE_MASK) {
+                    //当前毫秒的序列号已用完，等待时钟前进
+                    Thread.yield();
+                    continue;
+                }
+                //沿用上次的时间戳，序列号加1
+                next = current + 1;
+            }
+
+            if (state.compareAndSet(current, next)) {
+                return ((next >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT)
+                        | (workerId << WORKER_ID_SHIFT)
+                        | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * 生成下一个id的字符串形式，用作订单号
+     *
+     * @return
+     */
+    public String nextIdStr() {
+        return String.valueOf(nextId());
+    }
+
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * 当前时间，单独抽出便于测试时模拟时钟回拨
+     *
+     * @return
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,27 @@
+package com.sky.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class DailyOrderStatDTO implements Serializable {
+    //下单日期
+    private LocalDate orderDate;
+
+    //营业额(已完成订单金额合计)
+    private Double turnover;
+
+    //订单总数
+    private Integer orderCount;
+
+    //有效订单数(已完成)
+    private Integer validOrderCount;
+}
@@ -0,0 +1,21 @@
+package com.sky.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class DailyUserStatDTO implements Serializable {
+    //注册日期
+    private LocalDate createDate;
+
+    //新增用户数
+    private Integer newUsers;
+}
@@ -27,4 +27,10 @@ public class OrdersPageQueryDTO implements Serializable {
 
     private Long userId;
 
+    //是否使用游标分页，游标分页按(下单时间,id)定位，不统计总数，适用于大表的深度翻页
+    private Boolean cursorMode;
+
+    //游标分页时上一页返回的nextCursor，查询第一页时为空
+    private String cursor;
+
 }
@@ -0,0 +1,41 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 每日营业数据汇总
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyBusinessStats implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    //统计日期
+    private LocalDate bizDate;
+
+    //营业额(已完成订单金额合计)
+    private BigDecimal turnover;
+
+    //订单总数
+    private Integer totalOrderCount;
+
+    //有效订单数(已完成)
+    private Integer validOrderCount;
+
+    //新增用户数
+    private Integer newUsers;
+
+    //更新时间
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,47 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 缓存命中数据
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStatsVO implements Serializable {
+    //缓存名称
+    private String name;
+
+    //本地缓存命中次数
+    private Long localHits;
+
+    //redis命中次数
+    private Long redisHits;
+
+    //两级都未命中次数
+    private Long misses;
+
+    //本地缓存命中率：本地缓存命中次数/查询次数
+    private Double localHitRatio;
+
+    //redis命中率：redis命中次数/本地缓存未命中次数
+    private Double redisHitRatio;
+
+    //查询数据库次数
+    private Long loads;
+
+    //并发未命中时等待其他请求加载结果的次数
+    private Long coalescedLoads;
+
+    //临近过期时提前刷新的次数
+    private Long earlyRefreshes;
+
+    //本地缓存条数
+    private Long localSize;
+}
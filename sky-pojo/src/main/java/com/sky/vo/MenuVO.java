@@ -0,0 +1,23 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MenuVO implements Serializable {
+
+    //菜单版本，菜单内容的摘要，内容不变时版本不变
+    private String version;
+
+    //启用的分类，每个分类包含起售的菜品或套餐
+    private List<MenuCategoryVO> categories = new ArrayList<>();
+}
@@ -0,0 +1,29 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * WebSocket推送运行数据
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WebSocketStatsVO implements Serializable {
+    //当前连接的会话数量
+    private Integer sessionCount;
+
+    //发送队列中等待发送的消息数量
+    private Integer queueDepth;
+
+    //因发送队列已满而丢弃的消息数量
+    private Long droppedMessages;
+
+    //被移除的慢会话、断开会话数量
+    private Long evictedSessions;
+}
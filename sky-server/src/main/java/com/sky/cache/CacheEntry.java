@@ -0,0 +1,41 @@
+package com.sky.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 缓存条目，除缓存值外记录过期时间和从数据库加载的耗时，用于概率提前刷新
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheEntry implements Serializable {
+
+    //缓存值
+    private Object value;
+
+    //过期时间戳(毫秒)，0表示不过期
+    private long expireAt;
+
+    //加载耗时(毫秒)
+    private long loadMillis;
+
+    /**
+     * 判断是否需要提前刷新：越接近过期时间、加载越慢，提前刷新的概率越大
+     * 即 当前时间 - 加载耗时 * beta * ln(随机数) >= 过期时间
+     * @param beta 大于1时更倾向于提前刷新
+     * @return
+     */
+    public boolean shouldRefreshEarly(double beta) {
+        if (expireAt <= 0) {
+            return false;
+        }
+        double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+        long gap = (long) (-Math.max(loadMillis, 1) * beta * Math.log(random));
+        return System.currentTimeMillis() + gap >= expireAt;
+    }
+}
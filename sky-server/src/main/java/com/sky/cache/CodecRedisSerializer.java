@@ -0,0 +1,122 @@
+package com.sky.cache;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 使用可替换编码器的redis值序列化器，编码结果超过阈值时使用deflate压缩
+ * 存储格式：1个字节的格式标记 + 编码(或压缩)后的数据；没有格式标记的java序列化数据仍可读取，便于从旧格式平滑切换
+ */
+public class CodecRedisSerializer implements RedisSerializer<Object> {
+
+    //未压缩
+    private static final byte FORMAT_PLAIN = 0;
+
+    //deflate压缩
+    private static final byte FORMAT_DEFLATE = 1;
+
+    //java序列化数据的前两个字节
+    private static final byte JDK_MAGIC_0 = (byte) 0xAC;
+    private static final byte JDK_MAGIC_1 = (byte) 0xED;
+
+    private final ValueCodec codec;
+
+    private final int compressThreshold;
+
+    private final JdkValueCodec jdkValueCodec = new JdkValueCodec();
+
+    /**
+     * @param codec 编码器
+     * @param compressThreshold 编码后超过该字节数时压缩，小于等于0时不压缩
+     */
+    public CodecRedisSerializer(ValueCodec codec, int compressThreshold) {
+        this.codec = codec;
+        this.compressThreshold = compressThreshold;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        try {
+            byte[] encoded = codec.encode(value);
+            if (compressThreshold > 0 && encoded.length > compressThreshold) {
+                return withFormat(FORMAT_DEFLATE, deflate(encoded));
+            }
+            return withFormat(FORMAT_PLAIN, encoded);
+        } catch (Exception e) {
+            throw new SerializationException("缓存值编码失败：" + value.getClass().getName(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            if (bytes.length > 1 && bytes[0] == JDK_MAGIC_0 && bytes[1] == JDK_MAGIC_1) {
+                //切换编码前写入的java序列化数据
+                return jdkValueCodec.decode(bytes);
+            }
+
+            byte[] encoded = Arrays.copyOfRange(bytes, 1, bytes.length);
+            if (bytes[0] == FORMAT_DEFLATE) {
+                encoded = inflate(encoded);
+            }
+            return codec.decode(encoded);
+        } catch (Exception e) {
+            throw new SerializationException("缓存值解码失败", e);
+        }
+    }
+
+    private static byte[] withFormat(byte format, byte[] data) {
+        byte[] result = new byte[data.length + 1];
+        result[0] = format;
+        System.arraycopy(data, 0, result, 1, data.length);
+        return result;
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("压缩数据不完整");
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.sky.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * 基于java序列化的缓存值编码器
+ */
+public class JdkValueCodec implements ValueCodec {
+
+    @Override
+    public byte[] encode(Object value) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream objectOut = new ObjectOutputStream(out)) {
+            objectOut.writeObject(value);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public Object decode(byte[] bytes) throws Exception {
+        try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return objectIn.readObject();
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 两级缓存：一级为进程内本地缓存，二级为redis
+ * 读取时依次查询本地缓存、redis，redis命中后回填本地缓存；删除时通过redis频道通知其他节点删除本地缓存
+ * 带加载函数查询时，同一个key同时只有一个线程查询数据库，其余线程等待其结果；临近过期时按概率提前异步刷新
+ */
+public class TwoLevelCache {
+
+    private final String name;
+
+    //提前刷新的倾向系数，越大越早刷新
+    private static final double EARLY_REFRESH_BETA = 1.0;
+
+    private final Cache<String, CacheEntry> localCache;
+
+    //redis中缓存的有效时间，为null时不过期，不过期时不做提前刷新
+    private final Duration redisTtl;
+
+    private final RedisTemplate redisTemplate;
+
+    private final TwoLevelCacheManager cacheManager;
+
+    //本地缓存命中次数
+    private final LongAdder localHits = new LongAdder();
+
+    //redis命中次数
+    private final LongAdder redisHits = new LongAdder();
+
+    //两级都未命中的次数
+    private final LongAdder misses = new LongAdder();
+
+    //查询数据库的次数
+    private final LongAdder loads = new LongAdder();
+
+    //等待其他线程加载结果而没有查询数据库的次数
+    private final LongAdder coalescedLoads = new LongAdder();
+
+    //提前刷新的次数
+    private final LongAdder earlyRefreshes = new LongAdder();
+
+    //正在加载中的key，同一个key同时只有一个加载任务
+    private final Map<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
+    //每个key的版本号，删除缓存时加1；加载期间版本号发生变化说明加载到的可能是旧数据，不再写入缓存
+    private final Map<String, Long> generations = new ConcurrentHashMap<>();
+
+    TwoLevelCache(String name, long maximumSize, Duration localTtl, Duration redisTtl, RedisTemplate redisTemplate, TwoLevelCacheManager cacheManager) {
+        this.name = name;
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(localTtl)
+                .build();
+        this.redisTtl = redisTtl;
+        this.redisTemplate = redisTemplate;
+        this.cacheManager = cacheManager;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 查询缓存
+     * @param key
+     * @return 两级都未命中时返回null
+     */
+    public Object get(String key) {
+        CacheEntry entry = lookup(key);
+        return entry == null ? null : entry.getValue();
+    }
+
+    /**
+     * 查询缓存，未命中时调用加载函数查询数据库并写入缓存
+     * 同一个key并发未命中时只有一个线程执行加载函数，其余线程等待并共享其结果；
+     * 命中但临近过期时按概率触发一次异步刷新，当前请求仍返回缓存值
+     * @param key
+     * @param loader 从数据库加载数据
+     * @return
+     */
+    public Object get(String key, Supplier<Object> loader) {
+        CacheEntry entry = lookup(key);
+        if (entry != null) {
+            if (entry.shouldRefreshEarly(EARLY_REFRESH_BETA)) {
+                refreshAsync(key, loader);
+            }
+            return entry.getValue();
+        }
+
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            coalescedLoads.increment();
+            return join(existing);
+        }
+
+        //其他线程可能刚刚加载完成并移除了加载任务，加载前再检查一次本地缓存
+        entry = localCache.getIfPresent(key);
+        if (entry != null) {
+            loading.remove(key, future);
+            future.complete(entry.getValue());
+            return entry.getValue();
+        }
+        return load(key, loader, future);
+    }
+
+    /**
+     * 写入两级缓存
+     * @param key
+     * @param value
+     */
+    public void put(String key, Object value) {
+        put(key, value, 0);
+    }
+
+    private void put(String key, Object value, long loadMillis) {
+        CacheEntry entry = new CacheEntry(value, redisTtl == null ? 0 : System.currentTimeMillis() + redisTtl.toMillis(), loadMillis);
+        if (redisTtl == null) {
+            redisTemplate.opsForValue().set(key, entry);
+        } else {
+            redisTemplate.opsForValue().set(key, entry, redisTtl.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        localCache.put(key, entry);
+    }
+
+    /**
+     * 依次查询本地缓存、redis，并记录命中次数
+     * @param key
+     * @return
+     */
+    private CacheEntry lookup(String key) {
+        CacheEntry entry = localCache.getIfPresent(key);
+        if (entry != null) {
+            localHits.increment();
+            return entry;
+        }
+
+        Object value = redisTemplate.opsForValue().get(key);
+        if (value != null) {
+            redisHits.increment();
+            //兼容直接保存缓存值的旧数据
+            entry = value instanceof CacheEntry ? (CacheEntry) value : new CacheEntry(value, 0, 0);
+            localCache.put(key, entry);
+            return entry;
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 执行加载函数并写入缓存，完成后唤醒等待同一个key的线程
+     * @param key
+     * @param loader
+     * @param future 当前线程登记的加载任务
+     * @return
+     */
+    private Object load(String key, Supplier<Object> loader, CompletableFuture<Object> future) {
+        try {
+            long generation = generations.getOrDefault(key, 0L);
+            long start = System.currentTimeMillis();
+            Object value = loader.get();
+            loads.increment();
+            if (value != null) {
+                putIfCurrent(key, value, System.currentTimeMillis() - start, generation);
+            }
+            future.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    /**
+     * 版本号与加载开始时一致时才写入缓存，与删除缓存互斥，避免删除前加载的旧数据在删除后写入
+     * @param key
+     * @param value
+     * @param loadMillis
+     * @param generation 加载开始时的版本号
+     */
+    private void putIfCurrent(String key, Object value, long loadMillis, long generation) {
+        generations.compute(key, (k, current) -> {
+            if ((current == null ? 0L : current) == generation) {
+                put(key, value, loadMillis);
+            }
+            return current;
+        });
+    }
+
+    /**
+     * 异步刷新缓存，已有加载任务时不重复刷新
+     * @param key
+     * @param loader
+     */
+    private void refreshAsync(String key, Supplier<Object> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        if (loading.putIfAbsent(key, future) != null) {
+            return;
+        }
+        earlyRefreshes.increment();
+        submitLoad(key, loader, future);
+    }
+
+    /**
+     * 在重新加载线程池中执行已登记的加载任务
+     * @param key
+     * @param loader
+     * @param future
+     */
+    private void submitLoad(String key, Supplier<Object> loader, CompletableFuture<Object> future) {
+        try {
+            cacheManager.reload(() -> load(key, loader, future));
+        } catch (RuntimeException e) {
+            //线程池已关闭等情况下放弃本次加载，缓存未命中时再同步加载
+            loading.remove(key, future);
+            future.complete(null);
+        }
+    }
+
+    private Object join(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 删除两级缓存，并通知其他节点删除本地缓存
+     * @param keys
+     */
+    public void evict(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return;
+        }
+        for (String key : keys) {
+            generations.merge(key, 1L, Long::sum);
+        }
+        redisTemplate.delete(keys);
+        localCache.invalidateAll(keys);
+        cacheManager.publishEvict(name, keys);
+    }
+
+    /**
+     * 删除缓存后异步重新加载，存在事务时在事务提交后执行，避免加载到未提交的数据
+     * @param key
+     * @param loader 从数据库加载数据
+     */
+    public void evictAndReload(String key, Supplier<Object> loader) {
+        afterCommit(() -> doEvictAndReload(key, loader));
+    }
+
+    /**
+     * 删除缓存，存在事务时在事务提交后执行，避免提交前被其他请求用旧数据回填
+     * @param keys
+     */
+    public void evictAfterCommit(Collection<String> keys) {
+        afterCommit(() -> evict(keys));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void doEvictAndReload(String key, Supplier<Object> loader) {
+        evict(Collections.singletonList(key));
+        //替换正在进行的加载任务：删除前开始的加载因版本号变化不会写入缓存，之后未命中的请求等待本次加载
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        loading.put(key, future);
+        submitLoad(key, loader, future);
+    }
+
+    /**
+     * 删除本节点的本地缓存，收到其他节点的删除通知时调用
+     * 同时增加版本号，本节点在删除前开始的加载不会再写入缓存，避免多个节点的重新加载乱序覆盖
+     * @param keys 为空时删除全部本地缓存
+     */
+    void evictLocal(Collection<String> keys) {
+        if (keys == null) {
+            localCache.invalidateAll();
+            //本节点正在进行的加载可能读到了旧数据，全部作废
+            generations.replaceAll((key, generation) -> generation + 1);
+            loading.keySet().forEach(key -> generations.merge(key, 1L, Long::sum));
+        } else {
+            for (String key : keys) {
+                generations.merge(key, 1L, Long::sum);
+            }
+            localCache.invalidateAll(keys);
+        }
+    }
+
+    public long getLocalHits() {
+        return localHits.sum();
+    }
+
+    public long getRedisHits() {
+        return redisHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    public long getCoalescedLoads() {
+        return coalescedLoads.sum();
+    }
+
+    public long getEarlyRefreshes() {
+        return earlyRefreshes.sum();
+    }
+
+    public long getLocalSize() {
+        return localCache.estimatedSize();
+    }
+}
@@ -0,0 +1,157 @@
+package com.sky.cache;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 两级缓存管理，负责创建缓存和在节点之间广播本地缓存失效通知
+ */
+@Component
+@Slf4j
+public class TwoLevelCacheManager implements MessageListener {
+
+    //本地缓存失效通知频道
+    public static final String CHANNEL = "CACHE_EVICT";
+
+    //当前节点标识，忽略自己发出的失效通知
+    private static final String NODE_ID = UUID.randomUUID().toString();
+
+    //缓存重新加载的线程数量
+    private static final int RELOAD_THREADS = 2;
+
+    @Autowired
+    private RedisTemplate cacheRedisTemplate;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    private final AtomicInteger reloadThreadNumber = new AtomicInteger();
+
+    //异步重新加载缓存的线程池
+    private final ExecutorService reloadExecutor = Executors.newFixedThreadPool(RELOAD_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "cache-reload-" + reloadThreadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reloadExecutor.shutdown();
+    }
+
+    /**
+     * 获取缓存，不存在时创建
+     * @param name 缓存名称
+     * @param maximumSize 本地缓存的最大条数
+     * @param localTtl 本地缓存写入后的有效时间，作为失效通知丢失时的兜底
+     * @return
+     */
+    public TwoLevelCache getCache(String name, long maximumSize, Duration localTtl) {
+        return getCache(name, maximumSize, localTtl, null);
+    }
+
+    /**
+     * 获取缓存，不存在时创建
+     * @param name 缓存名称
+     * @param maximumSize 本地缓存的最大条数
+     * @param localTtl 本地缓存写入后的有效时间，作为失效通知丢失时的兜底
+     * @param redisTtl redis中缓存的有效时间，临近过期时按概率提前刷新，为null时不过期
+     * @return
+     */
+    public TwoLevelCache getCache(String name, long maximumSize, Duration localTtl, Duration redisTtl) {
+        return caches.computeIfAbsent(name, key -> new TwoLevelCache(key, maximumSize, localTtl, redisTtl, cacheRedisTemplate, this));
+    }
+
+    /**
+     * 查询所有缓存
+     * @return
+     */
+    public Collection<TwoLevelCache> getCaches() {
+        return caches.values();
+    }
+
+    /**
+     * 异步执行缓存重新加载
+     * @param task
+     */
+    void reload(Runnable task) {
+        reloadExecutor.execute(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                //加载失败时缓存保持为空，下次查询时再加载
+                log.error("缓存重新加载失败", e);
+            }
+        });
+    }
+
+    /**
+     * 通知其他节点删除本地缓存
+     * @param name 缓存名称
+     * @param keys 为空时删除全部本地缓存
+     */
+    void publishEvict(String name, Collection<String> keys) {
+        JSONObject message = new JSONObject();
+        message.put("node", NODE_ID);
+        message.put("cache", name);
+        message.put("keys", keys);
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, message.toJSONString());
+        } catch (Exception e) {
+            //通知失败时其他节点的本地缓存在有效时间到达后失效
+            log.error("发送缓存失效通知失败：{}", name, e);
+        }
+    }
+
+    /**
+     * 收到其他节点的失效通知
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        JSONObject body = JSON.parseObject(new String(message.getBody(), StandardCharsets.UTF_8));
+        if (NODE_ID.equals(body.getString("node"))) {
+            return;
+        }
+        TwoLevelCache cache = caches.get(body.getString("cache"));
+        if (cache == null) {
+            return;
+        }
+        List<String> keys = body.containsKey("keys") && body.get("keys") != null
+                ? new ArrayList<>(body.getJSONArray("keys").toJavaList(String.class))
+                : null;
+        cache.evictLocal(keys);
+    }
+}
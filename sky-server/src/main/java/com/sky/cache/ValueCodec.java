@@ -0,0 +1,21 @@
+package com.sky.cache;
+
+/**
+ * 缓存值编码器，负责对象与字节数组之间的转换
+ */
+public interface ValueCodec {
+
+    /**
+     * 将对象编码为字节数组
+     * @param value
+     * @return
+     */
+    byte[] encode(Object value) throws Exception;
+
+    /**
+     * 将字节数组解码为对象
+     * @param bytes
+     * @return
+     */
+    Object decode(byte[] bytes) throws Exception;
+}
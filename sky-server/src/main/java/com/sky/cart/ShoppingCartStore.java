@@ -0,0 +1,294 @@
+package com.sky.cart;
+
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.ShoppingCartMapper;
+import com.sky.menu.MenuItem;
+import com.sky.menu.MenuSnapshot;
+import com.sky.properties.ShoppingCartProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于redis哈希的购物车存储
+ * 每个用户一个哈希，field为菜品id+口味或套餐id，value为数量，通过HINCRBY原子修改数量
+ * 名称、图片、价格不保存在redis中，读取时从菜单快照中补全
+ * 启动时把shopping_cart表中的购物车迁移到redis，整个集群只迁移一次，redis中已有购物车的用户不迁移
+ */
+@Component
+@Slf4j
+public class ShoppingCartStore {
+
+    public static final String KEY_PREFIX = "SHOPPING_CART:";
+
+    //待写回数据库的用户id集合
+    public static final String DIRTY_KEY = "SHOPPING_CART_DIRTY";
+
+    //每次写回数据库的最大用户数量
+    private static final int WRITE_BEHIND_BATCH_SIZE = 100;
+
+    private static final String DISH_FIELD_PREFIX = "d:";
+
+    private static final String SETMEAL_FIELD_PREFIX = "s:";
+
+    //迁移已完成的标记
+    private static final String MIGRATED_KEY = "SHOPPING_CART_MIGRATED";
+
+    //迁移执行中的锁，防止多个节点同时迁移
+    private static final String MIGRATE_LOCK_KEY = "SHOPPING_CART_MIGRATE_LOCK";
+
+    //迁移时每批读取的购物车数据条数
+    private static final int MIGRATE_BATCH_SIZE = 500;
+
+    //修改数量并在数量减到0时删除商品，在同一个脚本中执行，避免删除并发加入的数量
+    private static final DefaultRedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            "local number = redis.call('hincrby', KEYS[1], ARGV[1], ARGV[2]) " +
+            "if number <= 0 then " +
+            "  redis.call('hdel', KEYS[1], ARGV[1]) " +
+            "  number = 0 " +
+            "end " +
+            "redis.call('expire', KEYS[1], ARGV[3]) " +
+            "return number", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private MenuSnapshot menuSnapshot;
+    @Autowired
+    private ShoppingCartProperties shoppingCartProperties;
+    @Autowired
+    private ShoppingCartMapper shoppingCartMapper;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 修改购物车中商品的数量，数量减到0时删除该商品
+     * @param userId
+     * @param dishId 菜品id，添加套餐时为空
+     * @param setmealId 套餐id，添加菜品时为空
+     * @param dishFlavor 菜品口味
+     * @param delta 数量的变化值
+     * @return 修改后的数量
+     */
+    public long increment(Long userId, Long dishId, Long setmealId, String dishFlavor, int delta) {
+        Long number = stringRedisTemplate.execute(INCREMENT_SCRIPT, Collections.singletonList(KEY_PREFIX + userId),
+                field(dishId, setmealId, dishFlavor), String.valueOf(delta),
+                String.valueOf(TimeUnit.DAYS.toSeconds(shoppingCartProperties.getTtlDays())));
+        markDirty(userId);
+        return number == null ? 0 : number;
+    }
+
+    private static String field(Long dishId, Long setmealId, String dishFlavor) {
+        return dishId != null
+                ? DISH_FIELD_PREFIX + dishId + ":" + (dishFlavor == null ? "" : dishFlavor)
+                : SETMEAL_FIELD_PREFIX + setmealId;
+    }
+
+    /**
+     * 查询用户的购物车，按菜品、套餐id排序
+     * 菜单中已删除的商品从购物车中移除，不会出现在结果中
+     * @param userId
+     * @return
+     */
+    public List<ShoppingCart> list(Long userId) {
+        String key = KEY_PREFIX + userId;
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(key);
+
+        List<ShoppingCart> shoppingCartList = new ArrayList<>();
+        List<String> deletedFields = new ArrayList<>();
+        for (Map.Entry<Object, Object> entry : new TreeMap<>(entries).entrySet()) {
+            String field = (String) entry.getKey();
+            int number = Integer.parseInt((String) entry.getValue());
+            if (number <= 0) {
+                continue;
+            }
+
+            ShoppingCart shoppingCart = ShoppingCart.builder()
+                    .userId(userId)
+                    .number(number)
+                    .build();
+            MenuItem menuItem = fillId(shoppingCart, field);
+            if (menuItem == null) {
+                //本节点的快照可能还没有收到新增菜品、套餐的通知，按id查询数据库确认
+                menuItem = shoppingCart.getDishId() != null
+                        ? menuSnapshot.loadDish(shoppingCart.getDishId())
+                        : menuSnapshot.loadSetmeal(shoppingCart.getSetmealId());
+            }
+            if (menuItem == null) {
+                deletedFields.add(field);
+                continue;
+            }
+            shoppingCart.setName(menuItem.getName());
+            shoppingCart.setImage(menuItem.getImage());
+            shoppingCart.setAmount(menuItem.getPrice());
+            shoppingCartList.add(shoppingCart);
+        }
+
+        if (!deletedFields.isEmpty()) {
+            log.info("移除购物车中已删除的商品，用户id：{}，{}", userId, deletedFields);
+            stringRedisTemplate.opsForHash().delete(key, deletedFields.toArray());
+            markDirty(userId);
+        }
+        return shoppingCartList;
+    }
+
+    /**
+     * 根据field设置购物车中菜品或套餐的id和口味，并从菜单快照中查询商品
+     * @param shoppingCart
+     * @param field
+     * @return 菜单中不存在该商品时返回null
+     */
+    private MenuItem fillId(ShoppingCart shoppingCart, String field) {
+        if (field.startsWith(DISH_FIELD_PREFIX)) {
+            String[] parts = field.split(":", 3);
+            shoppingCart.setDishId(Long.valueOf(parts[1]));
+            shoppingCart.setDishFlavor(parts[2].isEmpty() ? null : parts[2]);
+            return menuSnapshot.getDish(shoppingCart.getDishId());
+        }
+        shoppingCart.setSetmealId(Long.valueOf(field.substring(SETMEAL_FIELD_PREFIX.length())));
+        return menuSnapshot.getSetmeal(shoppingCart.getSetmealId());
+    }
+
+    @PostConstruct
+    public void startMigration() {
+        Thread thread = new Thread(this::migrate, "shopping-cart-migrate");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 把shopping_cart表中的购物车迁移到redis，redis中已有购物车的用户以redis为准
+     * 迁移失败时不设置完成标记，下次启动时重新迁移
+     */
+    private void migrate() {
+        try {
+            if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(MIGRATED_KEY))
+                    || !Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(MIGRATE_LOCK_KEY, "1", 10, TimeUnit.MINUTES))) {
+                return;
+            }
+        } catch (Exception e) {
+            log.error("购物车迁移到redis失败，下次启动时重试", e);
+            return;
+        }
+
+        try {
+            Set<Long> migratedUserIds = new HashSet<>();
+            Set<Long> skippedUserIds = new HashSet<>();
+            long lastId = 0;
+            while (true) {
+                List<ShoppingCart> shoppingCartList = shoppingCartMapper.listAfterId(lastId, MIGRATE_BATCH_SIZE);
+                for (ShoppingCart shoppingCart : shoppingCartList) {
+                    Long userId = shoppingCart.getUserId();
+                    String key = KEY_PREFIX + userId;
+                    if (skippedUserIds.contains(userId)) {
+                        continue;
+                    }
+                    if (!migratedUserIds.contains(userId)) {
+                        if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(key))) {
+                            skippedUserIds.add(userId);
+                            continue;
+                        }
+                        migratedUserIds.add(userId);
+                    }
+                    stringRedisTemplate.opsForHash().increment(key,
+                            field(shoppingCart.getDishId(), shoppingCart.getSetmealId(), shoppingCart.getDishFlavor()),
+                            shoppingCart.getNumber());
+                    stringRedisTemplate.expire(key, shoppingCartProperties.getTtlDays(), TimeUnit.DAYS);
+                }
+                if (shoppingCartList.size() < MIGRATE_BATCH_SIZE) {
+                    break;
+                }
+                lastId = shoppingCartList.get(shoppingCartList.size() - 1).getId();
+            }
+            stringRedisTemplate.opsForValue().set(MIGRATED_KEY, "1");
+            log.info("购物车迁移到redis完成，用户数：{}，跳过redis中已有购物车的用户数：{}", migratedUserIds.size(), skippedUserIds.size());
+        } catch (Exception e) {
+            log.error("购物车迁移到redis失败，下次启动时重试", e);
+        } finally {
+            try {
+                stringRedisTemplate.delete(MIGRATE_LOCK_KEY);
+            } catch (Exception e) {
+                log.warn("释放购物车迁移锁失败", e);
+            }
+        }
+    }
+
+    /**
+     * 清空用户的购物车
+     * @param userId
+     */
+    public void clean(Long userId) {
+        stringRedisTemplate.delete(KEY_PREFIX + userId);
+        markDirty(userId);
+    }
+
+    /**
+     * 将修改过的购物车写回shopping_cart表，开启写回时执行
+     */
+    @Scheduled(fixedDelay = 10000)
+    public void writeBehind() {
+        if (!shoppingCartProperties.isWriteBehind()) {
+            return;
+        }
+
+        List<String> failedUserIds = new ArrayList<>();
+        List<String> userIds = stringRedisTemplate.opsForSet().pop(DIRTY_KEY, WRITE_BEHIND_BATCH_SIZE);
+        while (userIds != null && !userIds.isEmpty()) {
+            for (String userId : userIds) {
+                try {
+                    write(Long.valueOf(userId));
+                } catch (Exception e) {
+                    log.error("购物车写回数据库失败，用户id：{}", userId, e);
+                    failedUserIds.add(userId);
+                }
+            }
+            if (userIds.size() < WRITE_BEHIND_BATCH_SIZE) {
+                break;
+            }
+            userIds = stringRedisTemplate.opsForSet().pop(DIRTY_KEY, WRITE_BEHIND_BATCH_SIZE);
+        }
+
+        //写回失败的用户下次重试
+        if (!failedUserIds.isEmpty()) {
+            stringRedisTemplate.opsForSet().add(DIRTY_KEY, failedUserIds.toArray(new String[0]));
+        }
+    }
+
+    /**
+     * 用redis中的购物车覆盖数据库中该用户的购物车
+     * @param userId
+     */
+    private void write(Long userId) {
+        List<ShoppingCart> shoppingCartList = list(userId);
+        LocalDateTime now = LocalDateTime.now();
+        shoppingCartList.forEach(shoppingCart -> shoppingCart.setCreateTime(now));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            shoppingCartMapper.deleteByUserId(userId);
+            if (!shoppingCartList.isEmpty()) {
+                shoppingCartMapper.insertBatch(shoppingCartList);
+            }
+        });
+    }
+
+    private void markDirty(Long userId) {
+        if (shoppingCartProperties.isWriteBehind()) {
+            stringRedisTemplate.opsForSet().add(DIRTY_KEY, String.valueOf(userId));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.sky.config;
+
+import com.sky.cache.TwoLevelCache;
+import com.sky.cache.TwoLevelCacheManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 配置类，用于创建两级缓存
+ */
+@Configuration
+@Slf4j
+public class CacheConfiguration {
+
+    /**
+     * C端菜品列表缓存，key规则：dish_分类id
+     * redis中保存1小时，临近过期时由查询请求按概率提前刷新
+     * @param twoLevelCacheManager
+     * @return
+     */
+    @Bean
+    public TwoLevelCache dishListCache(TwoLevelCacheManager twoLevelCacheManager){
+        log.info("开始创建菜品列表缓存");
+        return twoLevelCacheManager.getCache("dish", 1000, Duration.ofMinutes(5), Duration.ofHours(1));
+    }
+
+    /**
+     * C端套餐列表缓存，key规则：setmeal_分类id
+     * redis中保存1小时，避免遗漏的失效通知导致旧数据长期存在
+     * @param twoLevelCacheManager
+     * @return
+     */
+    @Bean
+    public TwoLevelCache setmealListCache(TwoLevelCacheManager twoLevelCacheManager){
+        log.info("开始创建套餐列表缓存");
+        return twoLevelCacheManager.getCache("setmeal", 500, Duration.ofMinutes(5), Duration.ofHours(1));
+    }
+
+    /**
+     * 套餐详情(包含套餐菜品关系)缓存，key规则：setmeal_detail_套餐id
+     * redis中保存1小时
+     * @param twoLevelCacheManager
+     * @return
+     */
+    @Bean
+    public TwoLevelCache setmealDetailCache(TwoLevelCacheManager twoLevelCacheManager){
+        log.info("开始创建套餐详情缓存");
+        return twoLevelCacheManager.getCache("setmealDetail", 1000, Duration.ofMinutes(5), Duration.ofHours(1));
+    }
+}
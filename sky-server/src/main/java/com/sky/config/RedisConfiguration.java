@@ -1,11 +1,17 @@
 package com.sky.config;
 
 
+import com.sky.cache.CodecRedisSerializer;
+import com.sky.cache.JdkValueCodec;
+import com.sky.cache.SmileValueCodec;
+import com.sky.cache.ValueCodec;
+import com.sky.properties.RedisCodecProperties;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
@@ -23,4 +29,37 @@ public class RedisConfiguration {
             return redisTemplate;
 
         }
+
+        /**
+         * 缓存数据使用的redisTemplate，值使用可配置的编码器编码，超过阈值时压缩
+         * @param redisConnectionFactory
+         * @param redisCodecProperties
+         * @return
+         */
+        @Bean
+        public RedisTemplate cacheRedisTemplate(RedisConnectionFactory redisConnectionFactory, RedisCodecProperties redisCodecProperties){
+            log.info("开始创建缓存redis模拟对象，编码方式：{}", redisCodecProperties.getCodec());
+            ValueCodec codec = "jdk".equals(redisCodecProperties.getCodec()) ? new JdkValueCodec() : new SmileValueCodec();
+            CodecRedisSerializer valueSerializer = new CodecRedisSerializer(codec, redisCodecProperties.getCompressThreshold());
+
+            RedisTemplate redisTemplate = new RedisTemplate();
+            redisTemplate.setConnectionFactory(redisConnectionFactory);
+            redisTemplate.setKeySerializer(new StringRedisSerializer());
+            redisTemplate.setHashKeySerializer(new StringRedisSerializer());
+            redisTemplate.setValueSerializer(valueSerializer);
+            redisTemplate.setHashValueSerializer(valueSerializer);
+            return redisTemplate;
+        }
+
+        /**
+         * redis消息监听容器，用于接收各节点之间的缓存失效等通知
+         * @param redisConnectionFactory
+         * @return
+         */
+        @Bean
+        public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory){
+            RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+            container.setConnectionFactory(redisConnectionFactory);
+            return container;
+        }
 }
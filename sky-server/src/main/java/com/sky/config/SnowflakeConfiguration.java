@@ -0,0 +1,26 @@
+package com.sky.config;
+
+import com.sky.properties.SnowflakeProperties;
+import com.sky.snowflake.WorkerIdLease;
+import com.sky.utils.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@Slf4j
+public class SnowflakeConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public SnowflakeIdGenerator snowflakeIdGenerator(SnowflakeProperties snowflakeProperties, WorkerIdLease workerIdLease){
+            Long workerId=snowflakeProperties.getWorkerId();
+            if(workerId ==null){
+                //未配置机器id时，从redis租用一个其他节点没有使用的机器id
+                workerId=workerIdLease.acquire();
+            }
+            log.info("开始创建雪花算法id生成器，机器id：{}",workerId);
+            return new SnowflakeIdGenerator(workerId,snowflakeProperties.getMaxBackwardMillis());
+        }
+}
@@ -0,0 +1,57 @@
+package com.sky.controller.admin;
+
+import com.sky.cache.TwoLevelCache;
+import com.sky.cache.TwoLevelCacheManager;
+import com.sky.result.Result;
+import com.sky.vo.CacheStatsVO;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RestController
+@RequestMapping("/admin/cache")
+@Api(tags="缓存相关接口")
+@Slf4j
+public class CacheController {
+
+    @Autowired
+    private TwoLevelCacheManager twoLevelCacheManager;
+
+    /**
+     * 查询各缓存的命中数据
+     * @return
+     */
+    @GetMapping("/stats")
+    @ApiOperation("查询缓存命中数据")
+    public Result<List<CacheStatsVO>> stats(){
+        List<CacheStatsVO> list=new ArrayList<>();
+        for (TwoLevelCache cache : twoLevelCacheManager.getCaches()) {
+            long localHits=cache.getLocalHits();
+            long redisHits=cache.getRedisHits();
+            long misses=cache.getMisses();
+            long total=localHits+redisHits+misses;
+            long localMisses=redisHits+misses;
+
+            list.add(CacheStatsVO.builder()
+                    .name(cache.getName())
+                    .localHits(localHits)
+                    .redisHits(redisHits)
+                    .misses(misses)
+                    .localHitRatio(total==0 ?0.0 :(double)localHits/total)
+                    .redisHitRatio(localMisses==0 ?0.0 :(double)redisHits/localMisses)
+                    .loads(cache.getLoads())
+                    .coalescedLoads(cache.getCoalescedLoads())
+                    .earlyRefreshes(cache.getEarlyRefreshes())
+                    .localSize(cache.getLocalSize())
+                    .build());
+        }
+        return Result.success(list);
+    }
+}
@@ -15,6 +15,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController("adminOrderController")
 @RequestMapping("/admin/order")
 @Slf4j
@@ -120,4 +122,30 @@ public class OrderController {
         orderService.complete(id);
         return Result.success();
     }
+
+    /**
+     * 批量接单
+     * @param ids
+     * @return
+     */
+    @PutMapping("/batchConfirm")
+    @ApiOperation("批量接单")
+    public Result<Integer> batchConfirm(@RequestParam List<Long> ids){
+        log.info("批量接单:{}",ids);
+        Integer count=orderService.batchConfirm(ids);
+        return Result.success(count);
+    }
+
+    /**
+     * 批量完成订单
+     * @param ids
+     * @return
+     */
+    @PutMapping("/batchComplete")
+    @ApiOperation("批量完成订单")
+    public Result<Integer> batchComplete(@RequestParam List<Long> ids){
+        log.info("批量完成订单:{}",ids);
+        Integer count=orderService.batchComplete(ids);
+        return Result.success(count);
+    }
 }
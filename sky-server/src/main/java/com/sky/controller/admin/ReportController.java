@@ -1,6 +1,7 @@
 package com.sky.controller.admin;
 
 import com.sky.result.Result;
+import com.sky.service.BusinessStatsService;
 import com.sky.service.ReportService;
 import com.sky.vo.OrderReportVO;
 import com.sky.vo.SalesTop10ReportVO;
@@ -13,6 +14,7 @@ import org.apache.commons.codec.language.bm.Rule;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -28,6 +30,8 @@ public class ReportController {
 
     @Autowired
     private ReportService reportService;
+    @Autowired
+    private BusinessStatsService businessStatsService;
 
     /**
      * 统计指定时间区间内的营业额数据
@@ -93,11 +97,33 @@ public class ReportController {
 
     /**
      * 导出运营数据报表
+     * @param begin
+     * @param end
      * @param response
      */
     @GetMapping("/export")
     @ApiOperation("导出运营数据报表")
-    public void export(HttpServletResponse response){
-        reportService.exportBusinessData(response);
+    public void export(
+            @DateTimeFormat (pattern="yyyy-MM-dd") LocalDate begin,
+            @DateTimeFormat (pattern="yyyy-MM-dd") LocalDate end,
+            HttpServletResponse response){
+        log.info("导出运营数据报表:{},{}",begin,end);
+        reportService.exportBusinessData(begin,end,response);
+    }
+
+    /**
+     * 重新计算指定时间区间内的每日营业数据汇总，用于历史数据回填
+     * @param begin
+     * @param end
+     * @return
+     */
+    @PostMapping("/rebuild")
+    @ApiOperation("重新计算每日营业数据汇总")
+    public Result rebuild(
+            @DateTimeFormat (pattern="yyyy-MM-dd") LocalDate begin,
+            @DateTimeFormat (pattern="yyyy-MM-dd") LocalDate end){
+        log.info("重新计算每日营业数据汇总:{},{}",begin,end);
+        businessStatsService.rebuild(begin,end);
+        return Result.success();
     }
 }
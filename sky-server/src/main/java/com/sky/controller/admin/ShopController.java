@@ -2,11 +2,11 @@ package com.sky.controller.admin;
 
 
 import com.sky.result.Result;
+import com.sky.shop.ShopStatus;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.*;
 
 @RestController("adminShopController")
@@ -16,10 +16,10 @@ import org.springframework.web.bind.annotation.*;
 
 public class ShopController {
 
-    public static final String KEY="SHOP_STATUS" ;
+    public static final String KEY=ShopStatus.KEY;
 
     @Autowired
-    private RedisTemplate redisTemplate;
+    private ShopStatus shopStatus;
 
 
     /**
@@ -31,7 +31,7 @@ public class ShopController {
     @ApiOperation("设置店铺的营业状态")
     public Result setStatus(@PathVariable Integer status){
         log.info("设置店铺的营业状态为:{}",status ==1? "营业中" : "打烊中");
-        redisTemplate.opsForValue().set(KEY,status);
+        shopStatus.set(status);
         return Result.success();
     }
 
@@ -42,8 +42,9 @@ public class ShopController {
     @GetMapping("/status")
     @ApiOperation("获取店铺的营业状态")
     public Result<Integer> getStatus(){
-        Integer status=(Integer) redisTemplate.opsForValue().get(KEY);
-        log.info("获取到店铺的营业状态为:{}",status ==1 ?"营业中" :"打烊中");
+        //直接读取内存中的营业状态
+        Integer status=shopStatus.get();
+        log.debug("获取到店铺的营业状态为:{}",Integer.valueOf(1).equals(status) ?"营业中" :"打烊中");
         return Result.success(status);
     }
 }
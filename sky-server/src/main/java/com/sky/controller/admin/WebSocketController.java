@@ -0,0 +1,38 @@
+package com.sky.controller.admin;
+
+import com.sky.result.Result;
+import com.sky.vo.WebSocketStatsVO;
+import com.sky.websocket.WebSocketServer;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/admin/ws")
+@Api(tags="WebSocket推送相关接口")
+@Slf4j
+public class WebSocketController {
+
+    @Autowired
+    private WebSocketServer webSocketServer;
+
+    /**
+     * 查询WebSocket推送运行数据
+     * @return
+     */
+    @GetMapping("/stats")
+    @ApiOperation("查询WebSocket推送运行数据")
+    public Result<WebSocketStatsVO> stats(){
+        WebSocketStatsVO webSocketStatsVO=WebSocketStatsVO.builder()
+                .sessionCount(webSocketServer.getSessionCount())
+                .queueDepth(webSocketServer.getQueueDepth())
+                .droppedMessages(webSocketServer.getDroppedMessages())
+                .evictedSessions(webSocketServer.getEvictedSessions())
+                .build();
+        return Result.success(webSocketStatsVO);
+    }
+}
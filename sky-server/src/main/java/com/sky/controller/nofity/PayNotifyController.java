@@ -4,7 +4,7 @@ import com.alibaba.druid.support.json.JSONUtils;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.sky.properties.WeChatProperties;
-import com.sky.service.OrderService;
+import com.sky.queue.PayNotifyQueue;
 import com.wechat.pay.contrib.apache.httpclient.util.AesUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.entity.ContentType;
@@ -26,7 +26,7 @@ import java.util.HashMap;
 @Slf4j
 public class PayNotifyController {
         @Autowired
-        private OrderService orderService;
+        private PayNotifyQueue payNotifyQueue;
         @Autowired
         private WeChatProperties weChatProperties;
 
@@ -52,8 +52,17 @@ public class PayNotifyController {
                 log.info("商户平台订单号：{}", outTradeNo);
                 log.info("微信支付交易号：{}", transactionId);
 
-                //业务处理，修改订单状态、来单提醒
-                orderService.paySuccess(outTradeNo);
+                //缺少交易号的通知无法去重，不予处理
+                if (transactionId == null || transactionId.isEmpty() || outTradeNo == null || outTradeNo.isEmpty()) {
+                        log.warn("支付成功通知缺少交易号或商户订单号，不予处理：{}", plainText);
+                        response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                        return;
+                }
+
+                //登记到通知队列，由后台线程修改订单状态、来单提醒，重复的通知直接响应
+                if (!payNotifyQueue.offer(transactionId, outTradeNo)) {
+                        log.info("重复的支付成功通知，交易号：{}", transactionId);
+                }
 
                 //给微信响应
                 responseToWeixin(response);
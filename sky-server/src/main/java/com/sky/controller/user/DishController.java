@@ -1,6 +1,7 @@
 package com.sky.controller.user;
 
 
+import com.sky.cache.TwoLevelCache;
 import com.sky.constant.StatusConstant;
 import com.sky.entity.Dish;
 import com.sky.result.Result;
@@ -10,7 +11,6 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -26,7 +26,7 @@ public class DishController {
     @Autowired
     private DishService dishService;
     @Autowired
-    private RedisTemplate redisTemplate;
+    private TwoLevelCache dishListCache;
 
     /**
      * 根据分类id查询菜品
@@ -39,22 +39,13 @@ public class DishController {
         //构造redis当中的key 规则  dish_分类id
         String key="dish_" +categoryId;
 
-        //查询redis中是否存在菜品数据
-        List<DishVO> list=(List<DishVO>)redisTemplate.opsForValue().get(key);
-        if(list !=null &&list.size()>0){
-            //如果存在直接返回，不需要查询数据库
-            return Result.success(list);
-        }
-
-
-
         Dish dish=new Dish();
         dish.setCategoryId(categoryId);
         dish.setStatus(StatusConstant.ENABLE);
 
-        //如果不存在，查询数据库，将查询到的数据放在redis中
-        list= dishService.listWithFlavor(dish);
-        redisTemplate.opsForValue().set(key,list);
+        //依次查询本地缓存、redis，都不存在时查询数据库并放入缓存
+        //同一分类并发未命中时只有一个请求查询数据库，其余请求等待其结果
+        List<DishVO> list=(List<DishVO>)dishListCache.get(key,() -> dishService.listWithFlavor(dish));
 
         return Result.success(list);
     }
@@ -0,0 +1,90 @@
+package com.sky.controller.user;
+
+import com.sky.menu.MenuDocument;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+@RestController("userMenuController")
+@RequestMapping("/user/menu")
+@Api(tags = "C端 菜单接口")
+@Slf4j
+public class MenuController {
+
+    @Autowired
+    private MenuDocument menuDocument;
+
+    /**
+     * 查询完整菜单，包含启用的分类和分类下起售的菜品、套餐
+     * 响应体为预先生成的gzip压缩json，请求头If-None-Match与当前版本一致时返回304
+     * @param ifNoneMatch
+     * @param acceptEncoding
+     * @param response
+     */
+    @GetMapping
+    @ApiOperation("查询完整菜单")
+    public void menu(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                     @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                     HttpServletResponse response) throws IOException {
+        MenuDocument.Document document = menuDocument.get();
+
+        response.setHeader(HttpHeaders.ETAG, document.getETag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        //客户端缓存的版本与当前版本一致，不需要返回响应体
+        if (matches(ifNoneMatch, document.getETag())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            response.setContentLength(document.getGzipBody().length);
+            response.getOutputStream().write(document.getGzipBody());
+        } else {
+            //极少数不支持gzip的客户端，解压后返回
+            response.setContentLength(document.getLength());
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(document.getGzipBody()))) {
+                StreamUtils.copy(in, response.getOutputStream());
+            }
+        }
+    }
+
+    /**
+     * 判断If-None-Match请求头中是否包含当前ETag，忽略弱校验前缀W/
+     * @param ifNoneMatch
+     * @param eTag
+     * @return
+     */
+    private boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(eTag) || tag.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,6 +1,7 @@
 package com.sky.controller.user;
 
 
+import com.sky.cache.TwoLevelCache;
 import com.sky.constant.StatusConstant;
 import com.sky.entity.Setmeal;
 import com.sky.result.Result;
@@ -25,15 +26,22 @@ public class SetmealController {
 
     @Autowired
     private SetmealService setmealService;
+    @Autowired
+    private TwoLevelCache setmealListCache;
 
     @GetMapping("/list")
     @ApiOperation("根据分类id查询套餐")
     public Result<List<Setmeal>> list(Long categoryId){
+        //构造缓存key 规则  setmeal_分类id
+        String key="setmeal_" +categoryId;
+
         Setmeal setmeal=new Setmeal();
         setmeal.setCategoryId(categoryId);
         setmeal.setStatus(StatusConstant.ENABLE);
 
-        List<Setmeal> list=setmealService.list(setmeal);
+        //依次查询本地缓存、redis，都不存在时查询数据库并放入缓存，空列表同样缓存
+        //同一分类并发未命中时只有一个请求查询数据库，管理端修改后开始的加载才会写入缓存
+        List<Setmeal> list=(List<Setmeal>)setmealListCache.get(key,() -> setmealService.list(setmeal));
         return Result.success(list);
     }
 
@@ -1,11 +1,11 @@
 package com.sky.controller.user;
 
 import com.sky.result.Result;
+import com.sky.shop.ShopStatus;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -17,10 +17,10 @@ import org.springframework.web.bind.annotation.RestController;
 @Slf4j
 public class ShopController {
 
-    public static final String KEY="SHOP_STATUS" ;
+    public static final String KEY=ShopStatus.KEY;
 
     @Autowired
-    private RedisTemplate redisTemplate;
+    private ShopStatus shopStatus;
 
 
     /**
@@ -30,8 +30,9 @@ public class ShopController {
     @GetMapping("/status")
     @ApiOperation("获取店铺的营业状态")
     public Result<Integer> getStatus(){
-        Integer status=(Integer) redisTemplate.opsForValue().get(KEY);
-        log.info("获取到店铺的营业状态为:{}",status ==1 ?"营业中" :"打烊中");
+        //直接读取内存中的营业状态
+        Integer status=shopStatus.get();
+        log.debug("获取到店铺的营业状态为:{}",Integer.valueOf(1).equals(status) ?"营业中" :"打烊中");
         return Result.success(status);
     }
 }
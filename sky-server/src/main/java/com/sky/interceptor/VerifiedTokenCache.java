@@ -0,0 +1,107 @@
+package com.sky.interceptor;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已校验令牌的缓存，key为令牌的摘要，不在内存中保存令牌原文
+ * 令牌首次出现时完整校验签名和过期时间，之后在令牌过期前直接返回缓存的claims；缓存条数有上限
+ */
+public class VerifiedTokenCache {
+
+    private final String secretKey;
+
+    private final Cache<String, Claims> cache;
+
+    /**
+     * @param secretKey jwt秘钥
+     * @param maximumSize 最多缓存的令牌数
+     */
+    public VerifiedTokenCache(String secretKey, long maximumSize) {
+        this.secretKey = secretKey;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        return remainingNanos(claims);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return remainingNanos(claims);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * 校验令牌
+     * @param token
+     * @return 令牌中的claims
+     * @throws io.jsonwebtoken.JwtException 令牌无效或已过期
+     * @throws IllegalArgumentException 令牌为空
+     */
+    public Claims verify(String token) {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("令牌为空");
+        }
+        String digest = digest(token);
+        Claims claims = cache.getIfPresent(digest);
+        //缓存的过期时间以纳秒计时，这里再按令牌的过期时间精确判断一次
+        if (claims != null && !isExpired(claims)) {
+            return claims;
+        }
+
+        claims = JwtUtil.parseJWT(secretKey, token);
+        cache.put(digest, claims);
+        return claims;
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * 令牌的SHA-256摘要，使用抗碰撞的摘要算法，避免伪造的令牌命中其他令牌的缓存
+     * @param token
+     * @return
+     */
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean isExpired(Claims claims) {
+        Date expiration = claims.getExpiration();
+        return expiration != null && expiration.getTime() <= System.currentTimeMillis();
+    }
+
+    private static long remainingNanos(Claims claims) {
+        Date expiration = claims.getExpiration();
+        if (expiration == null) {
+            //没有过期时间的令牌最多缓存1小时
+            return TimeUnit.HOURS.toNanos(1);
+        }
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, expiration.getTime() - System.currentTimeMillis()));
+    }
+}
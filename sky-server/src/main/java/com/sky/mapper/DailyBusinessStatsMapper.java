@@ -0,0 +1,57 @@
+package com.sky.mapper;
+
+import com.sky.entity.DailyBusinessStats;
+import org.apache.ibatis.annotations.Mapper;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Mapper
+public interface DailyBusinessStatsMapper {
+
+    /**
+     * 增量累加某一天的订单统计数据，当天没有汇总行时插入
+     * @param bizDate
+     * @param totalOrderCount
+     * @param validOrderCount
+     * @param turnover
+     */
+    void incrementOrders(LocalDate bizDate, Integer totalOrderCount, Integer validOrderCount, BigDecimal turnover);
+
+    /**
+     * 增量累加某一天的新增用户数，当天没有汇总行时插入
+     * @param bizDate
+     * @param newUsers
+     */
+    void incrementNewUsers(LocalDate bizDate, Integer newUsers);
+
+    /**
+     * 批量覆盖写入汇总数据，用于回填和校准
+     * @param statsList
+     */
+    void replaceBatch(List<DailyBusinessStats> statsList);
+
+    /**
+     * 查询指定日期区间内的汇总数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<DailyBusinessStats> listByDateRange(LocalDate begin, LocalDate end);
+
+    /**
+     * 汇总指定日期区间内的营业数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    DailyBusinessStats sumByDateRange(LocalDate begin, LocalDate end);
+
+    /**
+     * 统计指定日期之前的用户总量
+     * @param date
+     * @return
+     */
+    Integer sumNewUsersBefore(LocalDate date);
+}
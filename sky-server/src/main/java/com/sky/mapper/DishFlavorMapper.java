@@ -30,4 +30,11 @@ public interface DishFlavorMapper {
      */
     @Select("select * from dish_flavor where dish_id= #{dishId}")
     List<DishFlavor> getByDishId(Long dishId);
+
+    /**
+     * 根据菜品id集合批量查询口味数据
+     * @param dishIds
+     * @return
+     */
+    List<DishFlavor> getByDishIds(List<Long> dishIds);
 }
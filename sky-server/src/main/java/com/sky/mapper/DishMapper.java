@@ -63,6 +63,13 @@ public interface DishMapper {
         @Select("select * from dish where category_id=#{categoryId}")
         List<Dish> list(Dish dish);
 
+        /**
+         * 查询全部菜品的id、名称、图片、价格和售卖状态，用于构建菜单快照
+         * @return
+         */
+        @Select("select id, name, image, price, status from dish")
+        List<Dish> listAll();
+
         /**
          * 根据条件统计菜品数量
          * @param map
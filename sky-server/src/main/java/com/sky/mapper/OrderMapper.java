@@ -2,7 +2,9 @@ package com.sky.mapper;
 
 import com.github.pagehelper.Page;
 import com.sky.annotation.AutoFill;
+import com.sky.dto.DailyOrderStatDTO;
 import com.sky.dto.GoodsSalesDTO;
+import com.sky.dto.OrderStatusCountDTO;
 import com.sky.dto.OrdersPageQueryDTO;
 import com.sky.entity.Orders;
 import com.sky.enumeration.OperationType;
@@ -30,6 +32,64 @@ public interface OrderMapper {
     @Select("select * from orders where status=#{status} and order_time <#{orderTime}")
     List<Orders> getByStatusAndOrderTimeLT(Integer status, LocalDateTime time);
 
+    /**
+     * 按id游标分批查询指定状态且下单时间早于指定时间的订单
+     * @param status
+     * @param orderTime
+     * @param lastId 上一批最后一条订单的id
+     * @param limit 每批数量
+     * @return
+     */
+    @Select("select * from orders where status=#{status} and order_time <#{orderTime} and id >#{lastId} order by id limit #{limit}")
+    List<Orders> listByStatusAndOrderTimeLT(Integer status, LocalDateTime orderTime, Long lastId, Integer limit);
+
+    /**
+     * 根据id集合批量查询订单
+     * @param ids
+     * @return
+     */
+    List<Orders> getByIds(List<Long> ids);
+
+    /**
+     * 根据订单号批量查询订单
+     * @param numbers
+     * @return
+     */
+    List<Orders> getByNumbers(List<String> numbers);
+
+    /**
+     * 查询待付款且未支付的订单id并加行锁，需要在事务中调用
+     * @param ids
+     * @return
+     */
+    List<Long> lockPayableIds(List<Long> ids);
+
+    /**
+     * 批量将待付款且未支付的订单修改为已支付、待接单，已支付或已取消的订单不会被修改
+     * @param ids
+     * @param checkoutTime 结账时间
+     * @return 修改的订单数量
+     */
+    Integer paySuccessByIds(List<Long> ids, LocalDateTime checkoutTime);
+
+    /**
+     * 查询处于指定状态的订单id并加行锁，需要在事务中调用
+     * @param ids
+     * @param status
+     * @return
+     */
+    List<Long> lockIdsByStatus(List<Long> ids, Integer status);
+
+    /**
+     * 批量修改处于指定状态的订单的状态，状态已经变化的订单不会被修改
+     * @param ids
+     * @param fromStatus 订单当前应处的状态
+     * @param toStatus 修改后的状态
+     * @param deliveryTime 送达时间，为空时不修改
+     * @return 修改的订单数量
+     */
+    Integer updateStatusByIds(List<Long> ids, Integer fromStatus, Integer toStatus, LocalDateTime deliveryTime);
+
     /**
      * 根据订单号和用户id查询订单
      * @param orderNumber
@@ -45,6 +105,17 @@ public interface OrderMapper {
     @AutoFill(value = OperationType.UPDATE)
     void update(Orders orders);
 
+    /**
+     * 批量取消处于指定状态的订单，状态已经变化的订单不会被修改
+     * @param ids
+     * @param fromStatus 订单当前应处的状态
+     * @param toStatus 取消后的状态
+     * @param cancelReason
+     * @param cancelTime
+     * @return 取消的订单数量
+     */
+    Integer cancelByIds(List<Long> ids, Integer fromStatus, Integer toStatus, String cancelReason, LocalDateTime cancelTime);
+
     /**
      * 分页条件查询并按下单时间排序
      * @param ordersPageQueryDTO
@@ -52,6 +123,33 @@ public interface OrderMapper {
      */
     Page<Orders> pageQuery(OrdersPageQueryDTO ordersPageQueryDTO);
 
+    /**
+     * 在指定订单id范围内分页条件查询并按下单时间排序，订单号、手机号已由搜索索引匹配
+     * @param ids 搜索索引匹配到的订单id
+     * @param query 查询条件
+     * @return
+     */
+    Page<Orders> pageQueryByIds(List<Long> ids, OrdersPageQueryDTO query);
+
+    /**
+     * 按id顺序分批查询订单的id、订单号、手机号和下单时间，用于构建订单搜索索引
+     * @param lastId 上一批最后一条订单的id
+     * @param beginTime 下单开始时间，为空时不限制
+     * @param limit 每批数量
+     * @return
+     */
+    List<Orders> listForSearchIndex(Long lastId, LocalDateTime beginTime, Integer limit);
+
+    /**
+     * 游标分页条件查询，查询(下单时间,id)小于游标位置的订单，并按下单时间、id倒序排序
+     * @param query 查询条件
+     * @param cursorOrderTime 游标位置的下单时间，为空时从第一条开始
+     * @param cursorId 游标位置的订单id
+     * @param limit 查询数量
+     * @return
+     */
+    List<Orders> pageQueryByCursor(OrdersPageQueryDTO query, LocalDateTime cursorOrderTime, Long cursorId, Integer limit);
+
     /**
      * 根据id查询订单
      * @param id
@@ -68,6 +166,13 @@ public interface OrderMapper {
     @Select("select count(id) from orders where status=#{status}")
     Integer countStatus(Integer toBeConfirmed);
 
+    /**
+     * 根据动态条件按订单状态分组统计订单数量
+     * @param map
+     * @return
+     */
+    List<OrderStatusCountDTO> countGroupByStatus(Map map);
+
     /**
      * 根据动态条件统计营业额数据
      * @param map
@@ -82,6 +187,13 @@ public interface OrderMapper {
      */
     Integer countByMap(Map map);
 
+    /**
+     * 按下单日期分组统计指定时间区间内每天的营业额、订单总数和有效订单数
+     * @param map
+     * @return
+     */
+    List<DailyOrderStatDTO> sumGroupByOrderDate(Map map);
+
     /**
      * 统计指定时间区间内的销量排名top10
      * @param begin
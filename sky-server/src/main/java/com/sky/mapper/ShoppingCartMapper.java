@@ -4,6 +4,7 @@ import com.sky.entity.ShoppingCart;
 import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
 
 import java.util.List;
@@ -33,4 +34,13 @@ public interface ShoppingCartMapper {
      * @param shoppingCartList
      */
     void insertBatch(List<ShoppingCart> shoppingCartList);
+
+    /**
+     * 按id游标分批查询购物车数据
+     * @param lastId 上一批最后一条数据的id
+     * @param limit 每批数量
+     * @return
+     */
+    @Select("select * from shopping_cart where id >#{lastId} order by id limit #{limit}")
+    List<ShoppingCart> listAfterId(Long lastId, Integer limit);
 }
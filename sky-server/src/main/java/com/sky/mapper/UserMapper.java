@@ -1,9 +1,11 @@
 package com.sky.mapper;
 
+import com.sky.dto.DailyUserStatDTO;
 import com.sky.entity.User;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.List;
 import java.util.Map;
 
 @Mapper
@@ -33,4 +35,11 @@ public interface UserMapper {
      */
     Integer countByMap(Map map);
 
+    /**
+     * 按注册日期分组统计指定时间区间内每天的新增用户数量
+     * @param map
+     * @return
+     */
+    List<DailyUserStatDTO> countGroupByCreateDate(Map map);
+
 }
@@ -0,0 +1,220 @@
+package com.sky.menu;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Category;
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.entity.Setmeal;
+import com.sky.json.JacksonObjectMapper;
+import com.sky.mapper.CategoryMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.result.Result;
+import com.sky.service.DishService;
+import com.sky.vo.DishVO;
+import com.sky.vo.MenuCategoryVO;
+import com.sky.vo.MenuVO;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 预先生成的完整菜单文档：启用的分类、分类下起售的菜品(含口味)和套餐
+ * 文档序列化为json后以gzip压缩保存，以内容摘要作为版本号和ETag，小程序一次请求即可获取整个菜单
+ * 菜单变更后在后台线程重新生成，多次变更合并为一次生成
+ */
+@Component
+@Slf4j
+public class MenuDocument {
+
+    @Autowired
+    private CategoryMapper categoryMapper;
+    @Autowired
+    private SetmealMapper setmealMapper;
+    @Autowired
+    private DishService dishService;
+    @Autowired
+    private MenuSnapshot menuSnapshot;
+
+    //与接口返回使用相同的日期格式
+    private final ObjectMapper objectMapper = new JacksonObjectMapper();
+
+    //是否已经提交了尚未开始的生成任务，用于合并短时间内的多次变更
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "menu-document-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Document document;
+
+    @PostConstruct
+    public void init() {
+        menuSnapshot.addChangeListener(this::rebuildAsync);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdown();
+    }
+
+    /**
+     * 获取当前菜单文档，首次访问时同步生成
+     * @return
+     */
+    public Document get() {
+        Document current = document;
+        if (current == null) {
+            synchronized (this) {
+                if (document == null) {
+                    rebuild();
+                }
+                current = document;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 在后台线程重新生成菜单文档，已有等待中的生成任务时不重复提交
+     */
+    public void rebuildAsync() {
+        if (!rebuildPending.compareAndSet(false, true)) {
+            return;
+        }
+        rebuildExecutor.execute(() -> {
+            //先清除标记，生成过程中发生的变更会再次提交生成任务
+            rebuildPending.set(false);
+            try {
+                rebuild();
+            } catch (Exception e) {
+                //生成失败时继续使用旧文档，等待下次变更或定时生成
+                log.error("菜单文档生成失败", e);
+            }
+        });
+    }
+
+    /**
+     * 定时重新生成，作为变更通知丢失时的兜底，内容不变时版本号不变
+     */
+    @Scheduled(fixedDelay = 300000)
+    public void scheduledRebuild() {
+        rebuildAsync();
+    }
+
+    /**
+     * 查询数据库生成菜单文档，内容与当前文档相同时保留当前文档
+     */
+    public synchronized void rebuild() {
+        List<MenuCategoryVO> categories = loadCategories();
+        try {
+            String version = DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(categories));
+            Document current = document;
+            if (current != null && current.getVersion().equals(version)) {
+                return;
+            }
+
+            MenuVO menuVO = MenuVO.builder()
+                    .version(version)
+                    .categories(categories)
+                    .build();
+            byte[] json = objectMapper.writeValueAsBytes(Result.success(menuVO));
+            document = new Document(version, gzip(json), json.length);
+            log.info("菜单文档已生成，版本：{}，分类：{}，大小：{}字节，压缩后：{}字节",
+                    version, categories.size(), json.length, document.getGzipBody().length);
+        } catch (IOException e) {
+            throw new IllegalStateException("菜单文档序列化失败", e);
+        }
+    }
+
+    private List<MenuCategoryVO> loadCategories() {
+        //一次查询出所有起售的套餐，按分类id分组
+        //菜单版本号是文档内容的摘要，套餐、菜品和口味都按id排序，内容不变时版本号就不变
+        Setmeal setmealQuery = new Setmeal();
+        setmealQuery.setStatus(StatusConstant.ENABLE);
+        Map<Long, List<Setmeal>> setmealMap = setmealMapper.list(setmealQuery).stream()
+                .sorted(Comparator.comparing(Setmeal::getId))
+                .collect(Collectors.groupingBy(Setmeal::getCategoryId));
+
+        List<MenuCategoryVO> categories = new ArrayList<>();
+        for (Category category : categoryMapper.list(null)) {
+            List<DishVO> dishes = new ArrayList<>();
+            //菜品分类下才有菜品
+            if (Integer.valueOf(1).equals(category.getType())) {
+                Dish dishQuery = new Dish();
+                dishQuery.setCategoryId(category.getId());
+                dishQuery.setStatus(StatusConstant.ENABLE);
+                for (DishVO dishVO : dishService.listWithFlavor(dishQuery)) {
+                    if (StatusConstant.ENABLE.equals(dishVO.getStatus())) {
+                        dishVO.getFlavors().sort(Comparator.comparing(DishFlavor::getId));
+                        dishes.add(dishVO);
+                    }
+                }
+                dishes.sort(Comparator.comparing(DishVO::getId));
+            }
+
+            categories.add(MenuCategoryVO.builder()
+                    .id(category.getId())
+                    .type(category.getType())
+                    .name(category.getName())
+                    .sort(category.getSort())
+                    .dishes(dishes)
+                    .setmeals(setmealMap.getOrDefault(category.getId(), new ArrayList<>()))
+                    .build());
+        }
+        return categories;
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 生成后不再修改的菜单文档
+     */
+    @Getter
+    public static class Document {
+
+        //菜单版本号
+        private final String version;
+
+        //gzip压缩后的响应体
+        private final byte[] gzipBody;
+
+        //压缩前的字节数
+        private final int length;
+
+        private Document(String version, byte[] gzipBody, int length) {
+            this.version = version;
+            this.gzipBody = gzipBody;
+            this.length = length;
+        }
+
+        public String getETag() {
+            return "\"" + version + "\"";
+        }
+    }
+}
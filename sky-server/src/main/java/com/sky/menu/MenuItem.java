@@ -0,0 +1,25 @@
+package com.sky.menu;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+/**
+ * 菜单快照中的菜品或套餐
+ */
+@Getter
+@AllArgsConstructor
+public class MenuItem {
+
+    private final Long id;
+
+    private final String name;
+
+    private final String image;
+
+    private final BigDecimal price;
+
+    //售卖状态 0:停售 1:起售
+    private final Integer status;
+}
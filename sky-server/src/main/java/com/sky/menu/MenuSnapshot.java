@@ -0,0 +1,193 @@
+package com.sky.menu;
+
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 进程内菜单快照，保存菜品、套餐的名称、图片、价格和售卖状态
+ * 加入购物车、下单时按快照校验售卖状态和计算价格，不再查询数据库；快照整体替换，读取无需加锁
+ * 管理端修改分类、菜品、套餐后通过redis频道通知所有节点刷新快照，定时刷新作为兜底
+ */
+@Component
+@Slf4j
+public class MenuSnapshot implements MessageListener {
+
+    //菜单变更通知频道
+    public static final String CHANNEL = "MENU_CHANGED";
+
+    //当前节点标识，忽略自己发出的变更通知
+    private static final String NODE_ID = UUID.randomUUID().toString();
+
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private SetmealMapper setmealMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private volatile Snapshot snapshot;
+
+    //菜单变更监听器，本节点或其他节点的菜单变更后调用
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 根据id查询菜品
+     * @param dishId
+     * @return 菜品不存在时返回null
+     */
+    public MenuItem getDish(Long dishId) {
+        return current().dishes.get(dishId);
+    }
+
+    /**
+     * 根据id查询套餐
+     * @param setmealId
+     * @return 套餐不存在时返回null
+     */
+    public MenuItem getSetmeal(Long setmealId) {
+        return current().setmeals.get(setmealId);
+    }
+
+    /**
+     * 直接从数据库查询菜品，不修改快照；用于快照中没有、需要确认是否已被删除的菜品
+     * @param dishId
+     * @return 菜品不存在时返回null
+     */
+    public MenuItem loadDish(Long dishId) {
+        Dish dish = dishMapper.getById(dishId);
+        return dish == null ? null : new MenuItem(dish.getId(), dish.getName(), dish.getImage(), dish.getPrice(), dish.getStatus());
+    }
+
+    /**
+     * 直接从数据库查询套餐，不修改快照；用于快照中没有、需要确认是否已被删除的套餐
+     * @param setmealId
+     * @return 套餐不存在时返回null
+     */
+    public MenuItem loadSetmeal(Long setmealId) {
+        Setmeal setmeal = setmealMapper.getById(setmealId);
+        return setmeal == null ? null : new MenuItem(setmeal.getId(), setmeal.getName(), setmeal.getImage(), setmeal.getPrice(), setmeal.getStatus());
+    }
+
+    /**
+     * 注册菜单变更监听器，监听器在快照刷新后调用，不应执行耗时操作
+     * @param listener
+     */
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * 分类、菜品、套餐修改后调用，事务提交后刷新本节点快照并通知其他节点
+     */
+    public void changed() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refreshAndPublish();
+                }
+            });
+        } else {
+            refreshAndPublish();
+        }
+    }
+
+    /**
+     * 收到其他节点的菜单变更通知
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String nodeId = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (!NODE_ID.equals(nodeId)) {
+            refresh();
+            notifyListeners();
+        }
+    }
+
+    /**
+     * 重新加载菜单快照
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void refresh() {
+        Map<Long, MenuItem> dishes = new HashMap<>();
+        for (Dish dish : dishMapper.listAll()) {
+            dishes.put(dish.getId(), new MenuItem(dish.getId(), dish.getName(), dish.getImage(), dish.getPrice(), dish.getStatus()));
+        }
+        Map<Long, MenuItem> setmeals = new HashMap<>();
+        for (Setmeal setmeal : setmealMapper.list(new Setmeal())) {
+            setmeals.put(setmeal.getId(), new MenuItem(setmeal.getId(), setmeal.getName(), setmeal.getImage(), setmeal.getPrice(), setmeal.getStatus()));
+        }
+        snapshot = new Snapshot(Collections.unmodifiableMap(dishes), Collections.unmodifiableMap(setmeals));
+        log.debug("菜单快照已刷新，菜品：{}，套餐：{}", dishes.size(), setmeals.size());
+    }
+
+    private void refreshAndPublish() {
+        refresh();
+        notifyListeners();
+        stringRedisTemplate.convertAndSend(CHANNEL, NODE_ID);
+    }
+
+    private void notifyListeners() {
+        for (Runnable listener : changeListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                log.error("菜单变更监听器执行失败", e);
+            }
+        }
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    refresh();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private static class Snapshot {
+        private final Map<Long, MenuItem> dishes;
+        private final Map<Long, MenuItem> setmeals;
+
+        private Snapshot(Map<Long, MenuItem> dishes, Map<Long, MenuItem> setmeals) {
+            this.dishes = dishes;
+            this.setmeals = setmeals;
+        }
+    }
+}
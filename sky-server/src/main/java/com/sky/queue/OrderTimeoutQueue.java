@@ -0,0 +1,103 @@
+package com.sky.queue;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 待支付订单超时队列
+ * 基于redis有序集合实现的延迟队列，成员为订单id，分值为支付截止时间(毫秒)，服务重启后队列数据不丢失
+ */
+@Component
+@Slf4j
+public class OrderTimeoutQueue {
+
+    public static final String KEY = "ORDER_PAYMENT_TIMEOUT";
+
+    //补登记已完成的标记，整个集群只补登记一次
+    private static final String BACKFILLED_KEY = "ORDER_PAYMENT_TIMEOUT_BACKFILLED";
+
+    //补登记执行中的锁，防止多个节点同时补登记；节点中途退出时锁过期，由其他节点或重启后重新补登记
+    private static final String BACKFILL_LOCK_KEY = "ORDER_PAYMENT_TIMEOUT_BACKFILL_LOCK";
+
+    //补登记锁的有效分钟数
+    private static final long BACKFILL_LOCK_MINUTES = 10;
+
+    //下单后等待支付的分钟数
+    public static final int PAYMENT_TIMEOUT_MINUTES = 15;
+
+    @Autowired
+    private RedisTemplate redisTemplate;
+
+    /**
+     * 登记待支付订单，到达支付截止时间后自动取消
+     * @param orderId
+     * @param orderTime
+     */
+    public void add(Long orderId, LocalDateTime orderTime) {
+        long deadline = orderTime.plusMinutes(PAYMENT_TIMEOUT_MINUTES)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        redisTemplate.opsForZSet().add(KEY, orderId, deadline);
+    }
+
+    /**
+     * 取出已经超过支付截止时间的订单id，按截止时间先后排序
+     * @param limit 最多取出的数量
+     * @return
+     */
+    public List<Long> pollExpired(int limit) {
+        Set<Object> members = redisTemplate.opsForZSet()
+                .rangeByScore(KEY, 0, System.currentTimeMillis(), 0, limit);
+
+        List<Long> orderIds = new ArrayList<>();
+        if (members != null) {
+            for (Object member : members) {
+                orderIds.add(((Number) member).longValue());
+            }
+        }
+        return orderIds;
+    }
+
+    /**
+     * 从队列中移除订单(已支付、已取消或已处理完超时)
+     * @param orderIds
+     */
+    public void remove(Collection<Long> orderIds) {
+        if (orderIds == null || orderIds.isEmpty()) {
+            return;
+        }
+        redisTemplate.opsForZSet().remove(KEY, orderIds.toArray());
+    }
+
+    /**
+     * 开始补登记已有的待付款订单
+     * @return 已经补登记过或其他节点正在补登记时返回false
+     */
+    public boolean startBackfill() {
+        if (Boolean.TRUE.equals(redisTemplate.hasKey(BACKFILLED_KEY))) {
+            return false;
+        }
+        return Boolean.TRUE.equals(redisTemplate.opsForValue()
+                .setIfAbsent(BACKFILL_LOCK_KEY, "1", BACKFILL_LOCK_MINUTES, TimeUnit.MINUTES));
+    }
+
+    /**
+     * 结束补登记
+     * @param completed 补登记是否完成，未完成时只释放锁，下次启动时重新补登记
+     */
+    public void finishBackfill(boolean completed) {
+        if (completed) {
+            redisTemplate.opsForValue().set(BACKFILLED_KEY, "1");
+        }
+        redisTemplate.delete(BACKFILL_LOCK_KEY);
+    }
+}
@@ -0,0 +1,188 @@
+package com.sky.queue;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支付成功通知队列
+ * 基于redis列表实现，取出的通知先转移到本节点的处理中列表，处理完成后再删除；
+ * 节点异常退出后心跳过期，其他节点把它处理中列表里的通知放回队列，通知不会丢失
+ * 处理失败的通知放回队列尾部重试，失败次数达到MAX_ATTEMPTS后转入死信列表，不再自动重试
+ */
+@Component
+@Slf4j
+public class PayNotifyQueue {
+
+    public static final String KEY = "PAY_NOTIFY_QUEUE";
+
+    //处理中列表，后接节点标识；不带节点标识的为旧版本所有节点共用的处理中列表
+    public static final String PROCESSING_KEY = "PAY_NOTIFY_PROCESSING";
+
+    //多次处理失败的通知
+    public static final String DEAD_KEY = "PAY_NOTIFY_DEAD";
+
+    //商户订单号 -> 处理失败次数
+    public static final String ATTEMPTS_KEY = "PAY_NOTIFY_ATTEMPTS";
+
+    //有处理中列表的节点标识集合
+    private static final String NODES_KEY = "PAY_NOTIFY_NODES";
+
+    //节点心跳key的前缀，后接节点标识
+    private static final String HEARTBEAT_KEY_PREFIX = "PAY_NOTIFY_NODE:";
+
+    //心跳有效期，需远大于心跳间隔
+    private static final long HEARTBEAT_SECONDS = 30;
+
+    //按微信支付交易号去重的key前缀
+    private static final String DEDUPE_KEY_PREFIX = "PAY_NOTIFY_TXN:";
+
+    //去重记录保留的小时数，覆盖微信支付通知的重试周期
+    private static final long DEDUPE_HOURS = 25;
+
+    //转入死信列表前最多处理的次数
+    private static final int MAX_ATTEMPTS = 10;
+
+    @Autowired
+    private RedisTemplate redisTemplate;
+
+    //本节点标识，每次启动都不同
+    private final String nodeId = UUID.randomUUID().toString();
+
+    //本节点的处理中列表
+    private final String processingKey = PROCESSING_KEY + ":" + nodeId;
+
+    /**
+     * 登记支付成功通知，同一交易号只登记一次
+     * @param transactionId 微信支付交易号，不能为空
+     * @param outTradeNo 商户订单号
+     * @return 重复的通知返回false
+     */
+    public boolean offer(String transactionId, String outTradeNo) {
+        if (transactionId == null || transactionId.isEmpty() || outTradeNo == null || outTradeNo.isEmpty()) {
+            throw new IllegalArgumentException("支付成功通知缺少交易号或商户订单号");
+        }
+        String dedupeKey = DEDUPE_KEY_PREFIX + transactionId;
+        Boolean absent = redisTemplate.opsForValue().setIfAbsent(dedupeKey, outTradeNo, DEDUPE_HOURS, TimeUnit.HOURS);
+        if (!Boolean.TRUE.equals(absent)) {
+            return false;
+        }
+        try {
+            redisTemplate.opsForList().leftPush(KEY, outTradeNo);
+        } catch (RuntimeException e) {
+            //登记失败时删除去重记录，微信重试通知时可以重新登记
+            redisTemplate.delete(dedupeKey);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * 取出一批通知，队列为空时最多等待timeoutMillis毫秒
+     * @param limit 最多取出的数量
+     * @param timeoutMillis
+     * @return 商户订单号
+     */
+    public List<String> poll(int limit, long timeoutMillis) {
+        List<String> outTradeNos = new ArrayList<>();
+        Object first = redisTemplate.opsForList().rightPopAndLeftPush(KEY, processingKey, timeoutMillis, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return outTradeNos;
+        }
+        outTradeNos.add((String) first);
+
+        //通知集中到达时，一次取出多条合并处理
+        while (outTradeNos.size() < limit) {
+            Object next = redisTemplate.opsForList().rightPopAndLeftPush(KEY, processingKey);
+            if (next == null) {
+                break;
+            }
+            outTradeNos.add((String) next);
+        }
+        return outTradeNos;
+    }
+
+    /**
+     * 通知处理完成，从处理中列表删除并清除失败次数
+     * @param outTradeNos
+     */
+    public void ack(List<String> outTradeNos) {
+        for (String outTradeNo : outTradeNos) {
+            redisTemplate.opsForList().remove(processingKey, 1, outTradeNo);
+        }
+        redisTemplate.opsForHash().delete(ATTEMPTS_KEY, outTradeNos.toArray());
+    }
+
+    /**
+     * 通知处理失败，累加失败次数后放回队列尾部，排在已有的通知之后重新处理；失败次数达到上限时转入死信列表
+     * @param outTradeNo
+     * @return 转入死信列表时返回false
+     */
+    public boolean retry(String outTradeNo) {
+        Long attempts = redisTemplate.opsForHash().increment(ATTEMPTS_KEY, outTradeNo, 1);
+        boolean dead = attempts != null && attempts >= MAX_ATTEMPTS;
+        if (dead) {
+            redisTemplate.opsForList().leftPush(DEAD_KEY, outTradeNo);
+            redisTemplate.opsForHash().delete(ATTEMPTS_KEY, outTradeNo);
+        } else {
+            redisTemplate.opsForList().leftPush(KEY, outTradeNo);
+        }
+        redisTemplate.opsForList().remove(processingKey, 1, outTradeNo);
+        return !dead;
+    }
+
+    /**
+     * 刷新本节点的心跳，心跳过期后本节点处理中列表里的通知会被其他节点放回队列
+     */
+    public void heartbeat() {
+        redisTemplate.opsForSet().add(NODES_KEY, nodeId);
+        redisTemplate.opsForValue().set(HEARTBEAT_KEY_PREFIX + nodeId, "1", HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 将心跳已过期的节点处理中列表里的通知放回队列，恢复异常退出的节点未处理完的通知；不影响仍在运行的节点
+     * @return 恢复的通知数量
+     */
+    public int recover() {
+        //旧版本所有节点共用的处理中列表
+        int count = moveBack(PROCESSING_KEY);
+
+        Set<Object> nodeIds = redisTemplate.opsForSet().members(NODES_KEY);
+        if (nodeIds != null) {
+            for (Object id : nodeIds) {
+                if (nodeId.equals(id) || Boolean.TRUE.equals(redisTemplate.hasKey(HEARTBEAT_KEY_PREFIX + id))) {
+                    continue;
+                }
+                count += moveBack(PROCESSING_KEY + ":" + id);
+                redisTemplate.opsForSet().remove(NODES_KEY, id);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 本节点停止处理时调用，把本节点处理中列表里的通知放回队列并移除心跳
+     * @return 放回的通知数量
+     */
+    public int release() {
+        int count = moveBack(processingKey);
+        redisTemplate.opsForSet().remove(NODES_KEY, nodeId);
+        redisTemplate.delete(HEARTBEAT_KEY_PREFIX + nodeId);
+        return count;
+    }
+
+    private int moveBack(String fromKey) {
+        int count = 0;
+        while (redisTemplate.opsForList().rightPopAndLeftPush(fromKey, KEY) != null) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,153 @@
+package com.sky.queue;
+
+import com.sky.service.OrderService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 支付成功通知处理线程池，从通知队列中批量取出通知并修改订单状态
+ * 整批处理失败时逐条重新处理，只有处理失败的通知放回队列，避免一条异常通知拖累同批的其他通知
+ */
+@Component
+@Slf4j
+public class PayNotifyWorker {
+
+    //处理线程数量
+    private static final int WORKER_COUNT = 4;
+
+    //每批最多处理的通知数量
+    private static final int BATCH_SIZE = 100;
+
+    //队列为空时每次等待的毫秒数
+    private static final long POLL_TIMEOUT_MILLIS = 1000;
+
+    //处理失败后重试前等待的毫秒数
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    @Autowired
+    private PayNotifyQueue payNotifyQueue;
+    @Autowired
+    private OrderService orderService;
+
+    private ExecutorService executorService;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        payNotifyQueue.heartbeat();
+        recover();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        executorService = Executors.newFixedThreadPool(WORKER_COUNT, runnable -> {
+            Thread thread = new Thread(runnable, "pay-notify-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        for (int i = 0; i < WORKER_COUNT; i++) {
+            executorService.execute(this::work);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        executorService.shutdown();
+        if (executorService.awaitTermination(POLL_TIMEOUT_MILLIS * 2, TimeUnit.MILLISECONDS)) {
+            //处理线程都已退出，把本节点未处理完的通知放回队列
+            payNotifyQueue.release();
+        }
+    }
+
+    /**
+     * 刷新本节点的心跳，并恢复已经退出的节点未处理完的通知
+     */
+    @Scheduled(fixedDelay = 10000)
+    public void recover() {
+        try {
+            payNotifyQueue.heartbeat();
+            int recovered = payNotifyQueue.recover();
+            if (recovered > 0) {
+                log.info("恢复已退出节点未处理完的支付成功通知：{}条", recovered);
+            }
+        } catch (Exception e) {
+            log.error("恢复支付成功通知失败", e);
+        }
+    }
+
+    private void work() {
+        while (running) {
+            List<String> outTradeNos;
+            try {
+                outTradeNos = payNotifyQueue.poll(BATCH_SIZE, POLL_TIMEOUT_MILLIS);
+            } catch (Exception e) {
+                log.error("读取支付成功通知队列失败", e);
+                sleep(RETRY_DELAY_MILLIS);
+                continue;
+            }
+            if (outTradeNos.isEmpty()) {
+                continue;
+            }
+
+            try {
+                orderService.paySuccessBatch(outTradeNos);
+                payNotifyQueue.ack(outTradeNos);
+                log.info("处理支付成功通知：{}", outTradeNos);
+            } catch (Exception e) {
+                log.error("批量处理支付成功通知失败，逐条重新处理：{}", outTradeNos, e);
+                if (!processEach(outTradeNos)) {
+                    sleep(RETRY_DELAY_MILLIS);
+                }
+            }
+        }
+    }
+
+    /**
+     * 逐条处理通知，处理失败的通知放回队列
+     * @param outTradeNos
+     * @return 全部处理成功时返回true
+     */
+    private boolean processEach(List<String> outTradeNos) {
+        boolean allSucceeded = true;
+        for (String outTradeNo : outTradeNos) {
+            List<String> single = Collections.singletonList(outTradeNo);
+            try {
+                orderService.paySuccessBatch(single);
+                payNotifyQueue.ack(single);
+            } catch (Exception e) {
+                allSucceeded = false;
+                try {
+                    if (payNotifyQueue.retry(outTradeNo)) {
+                        log.error("处理支付成功通知失败，稍后重试：{}", outTradeNo, e);
+                    } else {
+                        log.error("支付成功通知多次处理失败，已转入死信列表：{}", outTradeNo, e);
+                    }
+                } catch (Exception retryException) {
+                    //放回队列失败时通知保留在处理中列表，本节点退出后由其他节点恢复
+                    log.error("支付成功通知放回队列失败：{}", outTradeNo, retryException);
+                }
+            }
+        }
+        return allSucceeded;
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
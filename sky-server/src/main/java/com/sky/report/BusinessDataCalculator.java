@@ -0,0 +1,58 @@
+package com.sky.report;
+
+import com.sky.entity.DailyBusinessStats;
+import com.sky.vo.BusinessDataVO;
+
+/**
+ * 营业数据计算
+ * 工作台和运营数据报表共用的营业额、订单完成率、平均客单价计算
+ */
+public final class BusinessDataCalculator {
+
+    private BusinessDataCalculator() {
+    }
+
+    /**
+     * 根据汇总数据计算营业数据，汇总数据为空时各项均为0
+     * @param stats
+     * @return
+     */
+    public static BusinessDataVO calculate(DailyBusinessStats stats) {
+        if (stats == null) {
+            return calculate(0.0, 0, 0, 0);
+        }
+        return calculate(stats.getTurnover() == null ? 0.0 : stats.getTurnover().doubleValue(),
+                valueOf(stats.getTotalOrderCount()), valueOf(stats.getValidOrderCount()), valueOf(stats.getNewUsers()));
+    }
+
+    /**
+     * 根据营业额、订单数和新增用户数计算营业数据
+     * @param turnover
+     * @param totalOrderCount
+     * @param validOrderCount
+     * @param newUsers
+     * @return
+     */
+    public static BusinessDataVO calculate(double turnover, int totalOrderCount, int validOrderCount, int newUsers) {
+        double unitPrice = 0.0;
+        double orderCompletionRate = 0.0;
+        if (totalOrderCount != 0 && validOrderCount != 0) {
+            //订单完成率
+            orderCompletionRate = (double) validOrderCount / totalOrderCount;
+            //平均客单价
+            unitPrice = turnover / validOrderCount;
+        }
+
+        return BusinessDataVO.builder()
+                .turnover(turnover)
+                .validOrderCount(validOrderCount)
+                .orderCompletionRate(orderCompletionRate)
+                .unitPrice(unitPrice)
+                .newUsers(newUsers)
+                .build();
+    }
+
+    private static int valueOf(Integer value) {
+        return value == null ? 0 : value;
+    }
+}
@@ -0,0 +1,323 @@
+package com.sky.search;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 最近订单的订单号、手机号三元组(trigram)倒排索引
+ * 订单搜索时先从索引中得到匹配的订单id，再按主键查询订单，避免 like '%xx%' 全表扫描
+ * 索引只覆盖最近WINDOW_DAYS天的订单，只处理开始时间落在索引窗口内的查询；未指定开始时间或开始时间早于索引窗口时返回null，
+ * 由调用方回退到数据库查询
+ * 首次加载整个索引窗口的订单耗时较长，在单独的线程中执行，不占用定时任务线程
+ * 增量加载时重新扫描最近一段时间内加载过的id范围，避免id较小但提交较晚的订单被跳过
+ */
+@Component
+@Slf4j
+public class OrderSearchIndex {
+
+    //索引覆盖最近多少天的订单
+    private static final int WINDOW_DAYS = 30;
+
+    //n-gram长度，关键字短于该长度时无法使用索引
+    private static final int GRAM_SIZE = 3;
+
+    //匹配的订单过多时不再使用索引，避免生成过长的in列表
+    private static final int MAX_CANDIDATES = 1000;
+
+    //每次从数据库加载的订单数量
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    //增量加载时重新扫描的时间范围(毫秒)，覆盖事务提交晚于更大id订单的情况
+    private static final long RESCAN_MARGIN_MILLIS = 60000;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    //三元组 -> 包含该三元组的订单id
+    private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+
+    //订单id -> 已索引的订单号、手机号、下单时间
+    private final Map<Long, IndexedOrder> indexedOrders = new ConcurrentHashMap<>();
+
+    //索引窗口的开始时间，为null表示索引尚未完成首次加载
+    private volatile LocalDateTime windowStart;
+
+    //已从数据库加载的最大订单id
+    private volatile long maxLoadedId;
+
+    //每次增量加载完成时的时间和已加载的最大订单id，增量加载从重新扫描范围开始时的id开始
+    private final Deque<long[]> watermarks = new ArrayDeque<>();
+
+    //首次加载是否正在执行
+    private final AtomicBoolean initialLoading = new AtomicBoolean();
+
+    private final ExecutorService initialLoadExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "order-search-index-load");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        initialLoadExecutor.shutdownNow();
+    }
+
+    /**
+     * 将订单加入索引，下单后调用
+     * @param orders
+     */
+    public void add(Orders orders) {
+        LocalDateTime start = windowStart;
+        if (start == null || orders.getOrderTime() == null || orders.getOrderTime().isBefore(start)) {
+            return;
+        }
+        index(orders);
+    }
+
+    private void index(Orders orders) {
+        IndexedOrder indexedOrder = new IndexedOrder(orders.getNumber(), orders.getPhone(), orders.getOrderTime());
+        if (indexedOrders.putIfAbsent(orders.getId(), indexedOrder) != null) {
+            return;
+        }
+        for (String gram : grams(orders.getNumber())) {
+            postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(orders.getId());
+        }
+        for (String gram : grams(orders.getPhone())) {
+            postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(orders.getId());
+        }
+    }
+
+    /**
+     * 根据订单号、手机号关键字查询匹配的订单id
+     * @param number 订单号关键字，可为空
+     * @param phone 手机号关键字，可为空
+     * @param beginTime 查询的下单开始时间
+     * @return 匹配的订单id；索引无法处理本次查询时返回null
+     */
+    public List<Long> search(String number, String phone, LocalDateTime beginTime) {
+        LocalDateTime start = windowStart;
+        if (start == null || beginTime == null || beginTime.isBefore(start)) {
+            //索引尚未加载，或查询范围没有完全落在索引窗口内，索引中没有匹配不代表数据库中没有
+            return null;
+        }
+
+        boolean hasNumber = number != null && !number.isEmpty();
+        boolean hasPhone = phone != null && !phone.isEmpty();
+        if (!hasNumber && !hasPhone) {
+            return null;
+        }
+        if ((hasNumber && number.length() < GRAM_SIZE) || (hasPhone && phone.length() < GRAM_SIZE)) {
+            return null;
+        }
+
+        Set<Long> candidates = null;
+        if (hasNumber) {
+            candidates = intersect(number);
+        }
+        if (hasPhone) {
+            Set<Long> phoneCandidates = intersect(phone);
+            if (candidates == null) {
+                candidates = phoneCandidates;
+            } else {
+                candidates.retainAll(phoneCandidates);
+            }
+        }
+
+        //三元组都命中不代表关键字连续出现，逐个校验
+        List<Long> orderIds = new ArrayList<>();
+        for (Long orderId : candidates) {
+            IndexedOrder indexedOrder = indexedOrders.get(orderId);
+            if (indexedOrder == null) {
+                continue;
+            }
+            if (hasNumber && (indexedOrder.number == null || !indexedOrder.number.contains(number))) {
+                continue;
+            }
+            if (hasPhone && (indexedOrder.phone == null || !indexedOrder.phone.contains(phone))) {
+                continue;
+            }
+            orderIds.add(orderId);
+            if (orderIds.size() > MAX_CANDIDATES) {
+                return null;
+            }
+        }
+        return orderIds;
+    }
+
+    /**
+     * 从数据库增量加载新订单，包括其他节点产生的订单
+     * 首次执行时提交整个索引窗口的加载任务，加载完成前不做增量加载；之后从RESCAN_MARGIN_MILLIS之前已加载的最大id开始重新扫描，
+     * 已索引的订单会被跳过
+     */
+    @Scheduled(fixedDelay = 5000)
+    public void refresh() {
+        if (windowStart == null) {
+            if (initialLoading.compareAndSet(false, true)) {
+                initialLoadExecutor.execute(this::initialLoad);
+            }
+            return;
+        }
+        load(rescanFromId(), null);
+        watermarks.addLast(new long[]{System.currentTimeMillis(), maxLoadedId});
+    }
+
+    /**
+     * 首次加载索引窗口内的订单，失败时由下一次refresh重新提交
+     */
+    private void initialLoad() {
+        try {
+            LocalDateTime start = LocalDateTime.now().minusDays(WINDOW_DAYS);
+            load(0, start);
+            watermarks.addLast(new long[]{System.currentTimeMillis(), maxLoadedId});
+            //首次加载完成后才开放查询，避免加载过程中返回不完整的结果
+            windowStart = start;
+            log.info("订单搜索索引加载完成，订单数量：{}", indexedOrders.size());
+        } catch (Exception e) {
+            log.error("订单搜索索引首次加载失败", e);
+        } finally {
+            initialLoading.set(false);
+        }
+    }
+
+    /**
+     * 移除超出索引窗口的订单
+     */
+    @Scheduled(cron = "0 30 3 * * ?")//每天凌晨3点30分触发一次
+    public void evictExpired() {
+        if (windowStart == null) {
+            //首次加载尚未完成
+            return;
+        }
+        LocalDateTime start = LocalDateTime.now().minusDays(WINDOW_DAYS);
+        windowStart = start;
+
+        List<Long> expiredIds = new ArrayList<>();
+        indexedOrders.forEach((orderId, indexedOrder) -> {
+            if (indexedOrder.orderTime.isBefore(start)) {
+                expiredIds.add(orderId);
+            }
+        });
+        for (Long orderId : expiredIds) {
+            IndexedOrder indexedOrder = indexedOrders.remove(orderId);
+            removePostings(indexedOrder.number, orderId);
+            removePostings(indexedOrder.phone, orderId);
+        }
+        log.info("订单搜索索引移除过期订单：{}条", expiredIds.size());
+    }
+
+    /**
+     * 增量加载的起始id：重新扫描范围开始前最后一次加载完成时的最大id
+     * @return
+     */
+    private long rescanFromId() {
+        long rescanFrom = System.currentTimeMillis() - RESCAN_MARGIN_MILLIS;
+        //保留最后一个早于重新扫描范围的记录，丢弃更早的记录
+        while (watermarks.size() > 1) {
+            Iterator<long[]> iterator = watermarks.iterator();
+            iterator.next();
+            if (iterator.next()[0] > rescanFrom) {
+                break;
+            }
+            watermarks.pollFirst();
+        }
+        return watermarks.isEmpty() ? maxLoadedId : watermarks.peekFirst()[1];
+    }
+
+    /**
+     * 按id分批加载订单，已索引的订单会被跳过
+     * @param fromId 从大于该id的订单开始加载
+     * @param beginTime 只加载该时间之后下单的订单，为空时不限制
+     */
+    private void load(long fromId, LocalDateTime beginTime) {
+        long lastId = fromId;
+        while (true) {
+            List<Orders> ordersList = orderMapper.listForSearchIndex(lastId, beginTime, LOAD_BATCH_SIZE);
+            for (Orders orders : ordersList) {
+                index(orders);
+            }
+            if (!ordersList.isEmpty()) {
+                lastId = ordersList.get(ordersList.size() - 1).getId();
+                maxLoadedId = Math.max(maxLoadedId, lastId);
+            }
+            if (ordersList.size() < LOAD_BATCH_SIZE) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 查询包含关键字所有三元组的订单id
+     * @param keyword
+     * @return
+     */
+    private Set<Long> intersect(String keyword) {
+        Set<Long> result = null;
+        for (String gram : grams(keyword)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids == null) {
+                return new HashSet<>();
+            }
+            if (result == null) {
+                result = new HashSet<>(ids);
+            } else {
+                result.retainAll(ids);
+            }
+            if (result.isEmpty()) {
+                return result;
+            }
+        }
+        return result;
+    }
+
+    private void removePostings(String value, Long orderId) {
+        for (String gram : grams(value)) {
+            postings.computeIfPresent(gram, (key, ids) -> {
+                ids.remove(orderId);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    /**
+     * 拆分出字符串中所有的三元组
+     * @param value
+     * @return
+     */
+    private static Set<String> grams(String value) {
+        Set<String> grams = new HashSet<>();
+        if (value == null) {
+            return grams;
+        }
+        for (int i = 0; i + GRAM_SIZE <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM_SIZE));
+        }
+        return grams;
+    }
+
+    @AllArgsConstructor
+    private static class IndexedOrder {
+        private final String number;
+        private final String phone;
+        private final LocalDateTime orderTime;
+    }
+}
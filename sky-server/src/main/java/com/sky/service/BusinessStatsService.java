@@ -0,0 +1,42 @@
+package com.sky.service;
+
+import com.sky.entity.Orders;
+import com.sky.entity.User;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface BusinessStatsService {
+
+    /**
+     * 用户下单，累加下单当天的订单总数
+     * @param orders
+     */
+    void orderSubmitted(Orders orders);
+
+    /**
+     * 订单状态变化，订单进入或离开"已完成"状态时调整下单当天的有效订单数和营业额
+     * @param ordersDB 状态变化前的订单数据
+     * @param status 变化后的订单状态
+     */
+    void orderStatusChanged(Orders ordersDB, Integer status);
+
+    /**
+     * 一批订单进入"已完成"状态，按下单日期合并后累加有效订单数和营业额
+     * @param ordersList 状态变化前处于非"已完成"状态的订单
+     */
+    void ordersCompleted(List<Orders> ordersList);
+
+    /**
+     * 新用户注册，累加注册当天的新增用户数
+     * @param user
+     */
+    void userRegistered(User user);
+
+    /**
+     * 根据订单表和用户表重新计算指定日期区间内的汇总数据，用于回填和校准，不包括当天及之后的日期
+     * @param begin
+     * @param end
+     */
+    void rebuild(LocalDate begin, LocalDate end);
+}
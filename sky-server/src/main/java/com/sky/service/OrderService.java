@@ -7,6 +7,9 @@ import com.sky.vo.OrderStatisticsVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 
 public interface OrderService {
     /**
@@ -29,6 +32,12 @@ public interface OrderService {
      */
     void paySuccess(String outTradeNo);
 
+    /**
+     * 批量处理支付成功通知，修改订单状态，已支付的订单不会重复处理
+     * @param outTradeNos 商户订单号
+     */
+    void paySuccessBatch(List<String> outTradeNos);
+
     /**
      * 用户端订单分页查询
      * @param page
@@ -105,4 +114,25 @@ public interface OrderService {
      * @param id
      */
     void reminder(Long id);
+
+    /**
+     * 批量接单
+     * @param ids
+     * @return 实际接单的订单数量
+     */
+    Integer batchConfirm(List<Long> ids);
+
+    /**
+     * 批量完成订单
+     * @param ids
+     * @return 实际完成的订单数量
+     */
+    Integer batchComplete(List<Long> ids);
+
+    /**
+     * 将下单时间早于指定时间且一直处于派送中的订单分批修改为已完成
+     * @param time
+     * @return 修改的订单数量
+     */
+    Integer completeDeliveryOrders(LocalDateTime time);
 }
@@ -43,8 +43,10 @@ public interface ReportService {
     SalesTop10ReportVO getSalesTop10(LocalDate begin, LocalDate end);
 
     /**
-     * 导出运营数据报表
+     * 导出指定时间区间内的运营数据报表，未指定时间区间时导出最近30天的数据
+     * @param begin
+     * @param end
      * @param response
      */
-    void exportBusinessData(HttpServletResponse response);
+    void exportBusinessData(LocalDate begin, LocalDate end, HttpServletResponse response);
 }
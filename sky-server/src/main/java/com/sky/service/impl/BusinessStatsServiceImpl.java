@@ -0,0 +1,170 @@
+package com.sky.service.impl;
+
+import com.sky.constant.MessageConstant;
+import com.sky.dto.DailyOrderStatDTO;
+import com.sky.dto.DailyUserStatDTO;
+import com.sky.entity.DailyBusinessStats;
+import com.sky.entity.Orders;
+import com.sky.entity.User;
+import com.sky.exception.ReportBusinessException;
+import com.sky.mapper.DailyBusinessStatsMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.service.BusinessStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class BusinessStatsServiceImpl implements BusinessStatsService {
+
+    //回填时每批写入的天数
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    @Autowired
+    private DailyBusinessStatsMapper dailyBusinessStatsMapper;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private UserMapper userMapper;
+
+    /**
+     * 用户下单，累加下单当天的订单总数
+     * @param orders
+     */
+    public void orderSubmitted(Orders orders) {
+        //在事务提交后累加，不在下单事务中持有当天汇总行的行锁
+        afterCommit(() -> dailyBusinessStatsMapper.incrementOrders(orders.getOrderTime().toLocalDate(), 1, 0, BigDecimal.ZERO));
+    }
+
+    /**
+     * 订单状态变化，订单进入或离开"已完成"状态时调整下单当天的有效订单数和营业额
+     * @param ordersDB 状态变化前的订单数据
+     * @param status 变化后的订单状态
+     */
+    public void orderStatusChanged(Orders ordersDB, Integer status) {
+        boolean wasCompleted=Orders.COMPLETED.equals(ordersDB.getStatus());
+        boolean isCompleted=Orders.COMPLETED.equals(status);
+        if(wasCompleted ==isCompleted){
+            //有效订单数和营业额不受影响
+            return;
+        }
+
+        BigDecimal amount=ordersDB.getAmount() ==null ?BigDecimal.ZERO :ordersDB.getAmount();
+        if(isCompleted){
+            dailyBusinessStatsMapper.incrementOrders(ordersDB.getOrderTime().toLocalDate(), 0, 1, amount);
+        }else{
+            dailyBusinessStatsMapper.incrementOrders(ordersDB.getOrderTime().toLocalDate(), 0, -1, amount.negate());
+        }
+    }
+
+    /**
+     * 一批订单进入"已完成"状态，按下单日期合并后累加有效订单数和营业额
+     * @param ordersList 状态变化前处于非"已完成"状态的订单
+     */
+    public void ordersCompleted(List<Orders> ordersList) {
+        Map<LocalDate,List<Orders>> ordersByDate=ordersList.stream()
+                .collect(Collectors.groupingBy(orders -> orders.getOrderTime().toLocalDate()));
+
+        ordersByDate.forEach((date, list) -> {
+            BigDecimal turnover=list.stream()
+                    .map(orders -> orders.getAmount() ==null ?BigDecimal.ZERO :orders.getAmount())
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            dailyBusinessStatsMapper.incrementOrders(date, 0, list.size(), turnover);
+        });
+    }
+
+    /**
+     * 新用户注册，累加注册当天的新增用户数
+     * @param user
+     */
+    public void userRegistered(User user) {
+        afterCommit(() -> dailyBusinessStatsMapper.incrementNewUsers(user.getCreateTime().toLocalDate(), 1));
+    }
+
+    /**
+     * 根据订单表和用户表重新计算指定日期区间内的汇总数据，用于回填和校准
+     * 当天的数据仍在增量累加，统计与覆盖写入之间提交的累加会丢失，所以不重新计算当天及之后的数据
+     * @param begin
+     * @param end
+     */
+    public void rebuild(LocalDate begin, LocalDate end) {
+        if(begin ==null || end ==null){
+            throw new ReportBusinessException(MessageConstant.REPORT_DATE_REQUIRED);
+        }
+        if(begin.isAfter(end)){
+            throw new ReportBusinessException(MessageConstant.REPORT_DATE_RANGE_INVALID);
+        }
+        LocalDate yesterday=LocalDate.now().minusDays(1);
+        if(end.isAfter(yesterday)){
+            end=yesterday;
+        }
+        if(begin.isAfter(end)){
+            log.info("重新计算每日营业数据汇总：没有需要计算的日期");
+            return;
+        }
+        log.info("重新计算每日营业数据汇总:{}~{}", begin, end);
+
+        Map map=new HashMap();
+        map.put("begin", LocalDateTime.of(begin, LocalTime.MIN));
+        map.put("end", LocalDateTime.of(end, LocalTime.MAX));
+
+        //按天分组查询订单统计数据和新增用户数
+        Map<LocalDate,DailyOrderStatDTO> dailyOrderStatMap=orderMapper.sumGroupByOrderDate(map).stream()
+                .collect(Collectors.toMap(DailyOrderStatDTO::getOrderDate, Function.identity()));
+        Map<LocalDate,Integer> newUserMap=userMapper.countGroupByCreateDate(map).stream()
+                .collect(Collectors.toMap(DailyUserStatDTO::getCreateDate, DailyUserStatDTO::getNewUsers));
+
+        //逐天生成汇总行，没有数据的日期补0，覆盖写入汇总表
+        List<DailyBusinessStats> statsList=new ArrayList<>();
+        for (LocalDate date=begin; !date.isAfter(end); date=date.plusDays(1)) {
+            DailyOrderStatDTO dailyOrderStat=dailyOrderStatMap.get(date);
+            statsList.add(DailyBusinessStats.builder()
+                    .bizDate(date)
+                    .turnover(dailyOrderStat ==null ?BigDecimal.ZERO :BigDecimal.valueOf(dailyOrderStat.getTurnover()))
+                    .totalOrderCount(dailyOrderStat ==null ?0 :dailyOrderStat.getOrderCount())
+                    .validOrderCount(dailyOrderStat ==null ?0 :dailyOrderStat.getValidOrderCount())
+                    .newUsers(newUserMap.getOrDefault(date, 0))
+                    .build());
+
+            if(statsList.size() >=REBUILD_BATCH_SIZE){
+                dailyBusinessStatsMapper.replaceBatch(statsList);
+                statsList=new ArrayList<>();
+            }
+        }
+        if(statsList.size()>0){
+            dailyBusinessStatsMapper.replaceBatch(statsList);
+        }
+    }
+
+    /**
+     * 存在事务时在事务提交后执行，否则立即执行
+     * @param action
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -12,6 +12,7 @@ import com.sky.exception.DeletionNotAllowedException;
 import com.sky.mapper.CategoryMapper;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealMapper;
+import com.sky.menu.MenuSnapshot;
 import com.sky.result.PageResult;
 import com.sky.service.CategoryService;
 import lombok.extern.slf4j.Slf4j;
@@ -32,6 +33,8 @@ public class CategoryServiceImpl implements CategoryService {
     private DishMapper dishMapper;
     @Autowired
     private SetmealMapper setmealMapper;
+    @Autowired
+    private MenuSnapshot menuSnapshot;
 
     /**
      * 新增分类
@@ -52,6 +55,8 @@ public class CategoryServiceImpl implements CategoryService {
         //category.setUpdateUser(BaseContext.getCurrentId());
 
         categoryMapper.insert(category);
+
+        menuSnapshot.changed();
     }
 
 
@@ -87,6 +92,8 @@ public class CategoryServiceImpl implements CategoryService {
 
         //删除分类数据
         categoryMapper.deleteById(id);
+
+        menuSnapshot.changed();
     }
 
     /**
@@ -101,6 +108,8 @@ public class CategoryServiceImpl implements CategoryService {
         //category.setUpdateUser(BaseContext.getCurrentId());
 
         categoryMapper.update(category);
+
+        menuSnapshot.changed();
     }
 
 
@@ -117,6 +126,8 @@ public class CategoryServiceImpl implements CategoryService {
                 //.updateUser(BaseContext.getCurrentId())
                 .build();
         categoryMapper.update(category);
+
+        menuSnapshot.changed();
     }
 
     /**
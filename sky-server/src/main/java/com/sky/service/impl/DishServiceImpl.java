@@ -2,6 +2,7 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.TwoLevelCache;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.DishDTO;
@@ -12,6 +13,7 @@ import com.sky.exception.DeletionNotAllowedException;
 import com.sky.mapper.DishFlavorMapper;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealDishMapper;
+import com.sky.menu.MenuSnapshot;
 import com.sky.result.PageResult;
 import com.sky.service.DishService;
 import com.sky.vo.DishVO;
@@ -22,7 +24,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 
 @Service
@@ -38,6 +46,12 @@ public class DishServiceImpl implements DishService {
     @Autowired
     private SetmealDishMapper setmealDishMapper;
 
+    @Autowired
+    private MenuSnapshot menuSnapshot;
+
+    @Autowired
+    private TwoLevelCache dishListCache;
+
     /**
      *   新增菜品和对应的口味
      * @param dishDTO
@@ -64,6 +78,9 @@ public class DishServiceImpl implements DishService {
             dishFlavorMapper.insertBatch(flavors);
         }
 
+        menuSnapshot.changed();
+        //只清理新增菜品所属分类的缓存
+        reloadDishListCache(dish.getCategoryId());
     }
 
 
@@ -84,8 +101,10 @@ public class DishServiceImpl implements DishService {
      */
     public void deleteBatch(List<Long> ids) {
         //判断当前菜品是否能够删除---   是否存在起售中的菜品？
+        Set<Long> categoryIds=new HashSet<>();
         for(Long id :ids){
             Dish dish=dishMapper.getById(id);
+            categoryIds.add(dish.getCategoryId());
             if(dish.getStatus() == StatusConstant.ENABLE){
                 //当前菜品处于起售中，不能删除
                 throw new DeletionNotAllowedException(MessageConstant.DISH_ON_SALE);
@@ -106,6 +125,9 @@ public class DishServiceImpl implements DishService {
             dishFlavorMapper.deleteByDishId(id);
         }
 
+        menuSnapshot.changed();
+        //清理被删除菜品所属分类的缓存
+        categoryIds.forEach(this::reloadDishListCache);
     }
 
 
@@ -114,7 +136,7 @@ public class DishServiceImpl implements DishService {
         Dish dish=dishMapper.getById(id);
 
         //根据菜品id查询口味数据
-        List<DishFlavor> dishFlavors=dishFlavorMapper.getByDishId(id);
+        List<DishFlavor> dishFlavors=getFlavorMap(Collections.singletonList(id)).getOrDefault(id,new ArrayList<>());
 
         //将查询到的数据封装到VO
         DishVO dishVO=new DishVO();
@@ -129,6 +151,9 @@ public class DishServiceImpl implements DishService {
      * @param dishDTO
      */
     public void updateWithFlavor(DishDTO dishDTO) {
+        //修改前的分类，菜品可能被移动到其他分类
+        Dish dishDB=dishMapper.getById(dishDTO.getId());
+
         Dish dish = new Dish();
         BeanUtils.copyProperties(dishDTO,dish);
 
@@ -148,6 +173,14 @@ public class DishServiceImpl implements DishService {
             dishFlavorMapper.insertBatch(flavors);
         }
 
+        menuSnapshot.changed();
+        //清理修改前后所属分类的缓存
+        Set<Long> categoryIds=new HashSet<>();
+        categoryIds.add(dishDB.getCategoryId());
+        if(dishDTO.getCategoryId()!=null){
+            categoryIds.add(dishDTO.getCategoryId());
+        }
+        categoryIds.forEach(this::reloadDishListCache);
     }
 
     /**
@@ -159,12 +192,16 @@ public class DishServiceImpl implements DishService {
         List<Dish> dishList=dishMapper.list(dish);
         List<DishVO> dishVOList=new ArrayList<>();
 
+        //一次查询出所有菜品的口味，按菜品id分组
+        List<Long> dishIds=dishList.stream().map(Dish::getId).collect(Collectors.toList());
+        Map<Long,List<DishFlavor>> flavorMap=getFlavorMap(dishIds);
+
         for(Dish d:dishList){
             DishVO dishVO=new DishVO();
             BeanUtils.copyProperties(d,dishVO);
 
-            //根据菜品id查询对应的口味
-            List<DishFlavor> flavors=dishFlavorMapper.getByDishId(d.getId());
+            //从分组结果中取出菜品对应的口味
+            List<DishFlavor> flavors=flavorMap.getOrDefault(d.getId(),new ArrayList<>());
 
             dishVO.setFlavors(flavors);
             dishVOList.add(dishVO);
@@ -174,4 +211,30 @@ public class DishServiceImpl implements DishService {
         return dishVOList;
     }
 
+    /**
+     * 批量查询菜品的口味，并按菜品id分组
+     * @param dishIds
+     * @return
+     */
+    private Map<Long,List<DishFlavor>> getFlavorMap(List<Long> dishIds){
+        if(dishIds.isEmpty()){
+            return new HashMap<>();
+        }
+        List<DishFlavor> flavors=dishFlavorMapper.getByDishIds(dishIds);
+        return flavors.stream().collect(Collectors.groupingBy(DishFlavor::getDishId));
+    }
+
+    /**
+     * 清理指定分类的C端菜品列表缓存，并异步重新加载该分类的起售菜品
+     * @param categoryId
+     */
+    private void reloadDishListCache(Long categoryId){
+        dishListCache.evictAndReload("dish_"+categoryId,() -> {
+            Dish dish=new Dish();
+            dish.setCategoryId(categoryId);
+            dish.setStatus(StatusConstant.ENABLE);
+            return listWithFlavor(dish);
+        });
+    }
+
 }
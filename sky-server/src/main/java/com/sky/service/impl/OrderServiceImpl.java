@@ -1,11 +1,12 @@
 package com.sky.service.impl;
 
 import com.alibaba.druid.sql.PagerUtils;
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cart.ShoppingCartStore;
 import com.sky.constant.MessageConstant;
+import com.sky.constant.StatusConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.*;
 import com.sky.entity.*;
@@ -13,8 +14,15 @@ import com.sky.exception.AddressBookBusinessException;
 import com.sky.exception.OrderBusinessException;
 import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.*;
+import com.sky.menu.MenuItem;
+import com.sky.menu.MenuSnapshot;
+import com.sky.properties.OrderProperties;
+import com.sky.queue.OrderTimeoutQueue;
+import com.sky.search.OrderSearchIndex;
 import com.sky.result.PageResult;
+import com.sky.service.BusinessStatsService;
 import com.sky.service.OrderService;
+import com.sky.utils.SnowflakeIdGenerator;
 import com.sky.utils.WeChatPayUtil;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
@@ -25,21 +33,29 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.CollectionUtils;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class OrderServiceImpl implements OrderService {
 
+    //批量修改订单状态时每批处理的订单数量
+    private static final int BATCH_UPDATE_SIZE = 500;
+
     @Autowired
     private OrderMapper orderMapper;
     @Autowired
@@ -47,20 +63,34 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     private AddressBookMapper addressBookMapper;
     @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
+    private ShoppingCartStore shoppingCartStore;
     @Autowired
     private UserMapper userMapper;
     @Autowired
     private WeChatPayUtil weChatPayUtil;
     @Autowired
     private WebSocketServer webSocketServer;
+    @Autowired
+    private BusinessStatsService businessStatsService;
+    @Autowired
+    private SnowflakeIdGenerator snowflakeIdGenerator;
+    @Autowired
+    private OrderTimeoutQueue orderTimeoutQueue;
+    @Autowired
+    private OrderSearchIndex orderSearchIndex;
+    @Autowired
+    private MenuSnapshot menuSnapshot;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private OrderProperties orderProperties;
 
     /**
      * 用户下单
+     * 购物车快照按菜单快照计价，事务内只执行订单和订单明细两条插入语句，其余操作在事务提交后执行
      * @param ordersSubmitDTO
      * @return
      */
-    @Transactional
     public OrderSubmitVO submitOrder(OrdersSubmitDTO ordersSubmitDTO) {
         //1.处理各种业务异常(地址簿为空，购物车数据为空)
         AddressBook addressBook=addressBookMapper.getById(ordersSubmitDTO.getAddressBookId());
@@ -73,40 +103,69 @@ public class OrderServiceImpl implements OrderService {
         //查询当前用户的购物车数据
         Long userId= BaseContext.getCurrentId();
 
-        ShoppingCart shoppingCart=new ShoppingCart();
-        shoppingCart.setUserId(userId);
-        List<ShoppingCart> shoppingCartList=shoppingCartMapper.list(shoppingCart);
+        List<ShoppingCart> shoppingCartList=shoppingCartStore.list(userId);
 
         if(shoppingCartList ==null || shoppingCartList.size()==0){
             //抛出业务异常
             throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_IS_NULL);
         }
 
-        //2.向订单表中插入1条数据
+        //2.按菜单快照生成订单明细并计算订单金额，不使用购物车中保存的价格和客户端提交的金额
+        List<OrderDetail> orderDetailList=new ArrayList<>();
+        BigDecimal amount=BigDecimal.ZERO;
+        int itemCount=0;
+        for(ShoppingCart cart : shoppingCartList){
+            MenuItem menuItem=cart.getDishId()!=null
+                    ?menuSnapshot.getDish(cart.getDishId())
+                    :menuSnapshot.getSetmeal(cart.getSetmealId());
+            if(menuItem==null || !StatusConstant.ENABLE.equals(menuItem.getStatus())){
+                throw new OrderBusinessException(MessageConstant.ORDER_ITEM_NOT_ON_SALE);
+            }
+
+            OrderDetail orderDetail=OrderDetail.builder()
+                    .name(menuItem.getName())
+                    .image(menuItem.getImage())
+                    .dishId(cart.getDishId())
+                    .setmealId(cart.getSetmealId())
+                    .dishFlavor(cart.getDishFlavor())
+                    .number(cart.getNumber())
+                    .amount(menuItem.getPrice())
+                    .build();
+            orderDetailList.add(orderDetail);
+            amount=amount.add(menuItem.getPrice().multiply(BigDecimal.valueOf(cart.getNumber())));
+            itemCount+=cart.getNumber();
+        }
+        //打包费按购物车份数计算，同样不使用客户端提交的金额
+        int packAmount=itemCount*orderProperties.getPackFeePerItem();
+        amount=amount.add(BigDecimal.valueOf(packAmount)).add(orderProperties.getDeliveryFee());
+
         Orders orders=new Orders();
         BeanUtils.copyProperties(ordersSubmitDTO,orders);
+        orders.setPackAmount(packAmount);
+        orders.setAmount(amount);
         orders.setOrderTime(LocalDateTime.now());
         orders.setPayStatus(Orders.UN_PAID);
         orders.setStatus(Orders.PENDING_PAYMENT);
-        orders.setNumber(String.valueOf(System.currentTimeMillis()));
+        orders.setNumber(snowflakeIdGenerator.nextIdStr());
         orders.setPhone(addressBook.getPhone());
         orders.setConsignee(addressBook.getConsignee());
         orders.setUserId(userId);
 
-        orderMapper.insert(orders);
-        List<OrderDetail> orderDetailList=new ArrayList<>();
-        //3.向订单明细表中插入n条数据
-        for(ShoppingCart cart : shoppingCartList){
-            OrderDetail orderDetail=new OrderDetail();//订单明细
-            BeanUtils.copyProperties(cart,orderDetail);
-            orderDetail.setOrderId(orders.getId());//设置当前订单明细关联的订单id
-            orderDetailList.add(orderDetail);
-        }
-
-        orderDetailMapper.insertBatch(orderDetailList);
+        //3.事务内插入1条订单数据和n条订单明细数据
+        transactionTemplate.executeWithoutResult(status -> {
+            orderMapper.insert(orders);
+            orderDetailList.forEach(orderDetail -> orderDetail.setOrderId(orders.getId()));//设置订单明细关联的订单id
+            orderDetailMapper.insertBatch(orderDetailList);
+        });
 
         //4.清空当前用户的购物车数据
-        shoppingCartMapper.deleteByUserId(userId);
+        shoppingCartStore.clean(userId);
+        //累加当天的订单总数
+        businessStatsService.orderSubmitted(orders);
+        //登记到超时队列，超过支付时间后自动取消
+        orderTimeoutQueue.add(orders.getId(),orders.getOrderTime());
+        //加入订单搜索索引
+        orderSearchIndex.add(orders);
 
         //5.封装VO返回结果
         OrderSubmitVO orderSubmitVO =OrderSubmitVO.builder()
@@ -189,8 +248,96 @@ public class OrderServiceImpl implements OrderService {
 
         orderMapper.update(orders);
 
+        //已支付的订单不再需要超时取消
+        orderTimeoutQueue.remove(Collections.singletonList(ordersDB.getId()));
+
         //通过WebSocket向客户端浏览器推送消息
-        webSocketServer.sendTOAllClient(JSON.toJSONString(orders));
+        webSocketServer.sendToTopic(WebSocketServer.TOPIC_MERCHANT,orders);
+    }
+
+    /**
+     * 批量处理支付成功通知，修改订单状态
+     * @param outTradeNos
+     */
+    public void paySuccessBatch(List<String> outTradeNos) {
+        if(CollectionUtils.isEmpty(outTradeNos)){
+            return;
+        }
+
+        //同一批通知中可能包含重复的订单号，已支付的订单直接跳过
+        List<Orders> ordersList=orderMapper.getByNumbers(outTradeNos.stream().distinct().collect(Collectors.toList()));
+        List<Long> ids=ordersList.stream()
+                .filter(orders -> Orders.UN_PAID.equals(orders.getPayStatus()))
+                .map(Orders::getId)
+                .collect(Collectors.toList());
+        if(ids.isEmpty()){
+            return;
+        }
+
+        //锁定仍处于待付款的订单后再修改，只有实际修改的订单才移出超时队列、推送消息
+        LocalDateTime checkoutTime=LocalDateTime.now();
+        List<Long> paidIds=transactionTemplate.execute(status -> {
+            List<Long> payableIds=orderMapper.lockPayableIds(ids);
+            if(!payableIds.isEmpty()){
+                orderMapper.paySuccessByIds(payableIds,checkoutTime);
+            }
+            return payableIds;
+        });
+
+        //订单已被超时取消后才收到支付成功通知，需要退款
+        Set<Long> paidIdSet=new HashSet<>(paidIds);
+        List<Orders> paidAfterCancel=ordersList.stream()
+                .filter(orders -> ids.contains(orders.getId()) && !paidIdSet.contains(orders.getId()))
+                .collect(Collectors.toList());
+        refundPaidAfterCancel(paidAfterCancel);
+
+        if(paidIds.isEmpty()){
+            return;
+        }
+
+        //已支付的订单不再需要超时取消
+        orderTimeoutQueue.remove(paidIds);
+
+        //通过WebSocket向商家端推送消息，同一时间段内的消息合并发送
+        for (Long id : paidIds) {
+            Orders orders = Orders.builder()
+                    .id(id)
+                    .status(Orders.TO_BE_CONFIRMED)
+                    .payStatus(Orders.PAID)
+                    .checkoutTime(checkoutTime)
+                    .build();
+            webSocketServer.sendToTopic(WebSocketServer.TOPIC_MERCHANT,orders);
+        }
+    }
+
+    /**
+     * 已取消的订单收到支付成功通知时退款，退款失败时提醒商家人工处理
+     * @param ordersList
+     */
+    private void refundPaidAfterCancel(List<Orders> ordersList){
+        for (Orders ordersDB : ordersList) {
+            Orders latest=orderMapper.getById(ordersDB.getId());
+            if(latest==null || !Orders.CANCELLED.equals(latest.getStatus()) || !Orders.UN_PAID.equals(latest.getPayStatus())){
+                //订单已被其他通知处理
+                continue;
+            }
+            log.warn("订单已取消但收到支付成功通知，发起退款：{}",latest.getNumber());
+            try {
+                weChatPayUtil.refund(latest.getNumber(),latest.getNumber(),latest.getAmount(),latest.getAmount());
+                Orders orders=Orders.builder()
+                        .id(latest.getId())
+                        .payStatus(Orders.REFUND)
+                        .build();
+                orderMapper.update(orders);
+            } catch (Exception e) {
+                log.error("已取消订单退款失败，需要人工处理：{}",latest.getNumber(),e);
+                Map map=new HashMap();
+                map.put("type",3);
+                map.put("orderId",latest.getId());
+                map.put("content","订单已取消但用户已支付，退款失败请人工处理，订单号: "+latest.getNumber());
+                webSocketServer.sendToTopic(WebSocketServer.TOPIC_MERCHANT,map);
+            }
+        }
     }
 
     /**
@@ -215,11 +362,14 @@ public class OrderServiceImpl implements OrderService {
 
         //查询出订单明细，并封装如OrderVO进行响应
         if(page !=null &&page.getTotal()>0){
+            //一次性查询出当前页所有订单的明细，按订单id分组
+            Map<Long,List<OrderDetail>> orderDetailMap=getOrderDetailMap(page.getResult());
+
             for(Orders orders:page){
                 Long orderId=orders.getId();//订单id
 
-                //查询订单明细
-                List<OrderDetail> orderDetailList=orderDetailMapper.getByOrderId(orderId);
+                //订单明细
+                List<OrderDetail> orderDetailList=orderDetailMap.getOrDefault(orderId,new ArrayList<>());
 
                 OrderVO orderVO=new OrderVO();
                 BeanUtils.copyProperties(orders,orderVO);
@@ -276,21 +426,10 @@ public class OrderServiceImpl implements OrderService {
             //根据订单id查询当前订单详情
             List<OrderDetail> orderDetailList=orderDetailMapper.getByOrderId(id);
 
-            //将订单详情对象转换为购物车对象
-            List<ShoppingCart> shoppingCartList=orderDetailList.stream().map(x ->{
-                ShoppingCart shoppingCart=new ShoppingCart();
-
-                //将原订单详情里面的菜品信息重新赋值到购物车对象中
-                //id参数表示要忽略拷贝的属性名，在这里是将OrderDetail对象的属性值拷贝到ShoppingCart对象中，但忽略id属性
-                BeanUtils.copyProperties(x,shoppingCart,"id");
-                shoppingCart.setUserId(userId);
-                shoppingCart.setCreateTime(LocalDateTime.now());
-
-                return  shoppingCart;
-            }).collect(Collectors.toList());
-
-            //将购物车对象批量添加到数据库
-            shoppingCartMapper.insertBatch(shoppingCartList);
+            //将原订单详情里面的菜品、套餐重新加入购物车
+            for (OrderDetail orderDetail : orderDetailList) {
+                shoppingCartStore.increment(userId,orderDetail.getDishId(),orderDetail.getSetmealId(),orderDetail.getDishFlavor(),orderDetail.getNumber());
+            }
     }
 
     /**
@@ -300,32 +439,86 @@ public class OrderServiceImpl implements OrderService {
      */
     @Override
     public PageResult conditionSearch(OrdersPageQueryDTO ordersPageQueryDTO) {
+        if(Boolean.TRUE.equals(ordersPageQueryDTO.getCursorMode())){
+            //游标分页，不统计总数
+            return conditionSearchByCursor(ordersPageQueryDTO);
+        }
+
+        //按订单号、手机号搜索时，先从搜索索引中得到匹配的订单id
+        //未指定开始时间或开始时间早于索引窗口(最近30天)时索引无法处理，回退到模糊查询
+        List<Long> matchedIds=orderSearchIndex.search(ordersPageQueryDTO.getNumber(),ordersPageQueryDTO.getPhone(),ordersPageQueryDTO.getBeginTime());
+        if(matchedIds !=null && matchedIds.isEmpty()){
+            return new PageResult(0,new ArrayList<>());
+        }
+
         PageHelper.startPage(ordersPageQueryDTO.getPage(),ordersPageQueryDTO.getPageSize());
 
-        Page<Orders> page=orderMapper.pageQuery(ordersPageQueryDTO);
+        Page<Orders> page=matchedIds !=null
+                ?orderMapper.pageQueryByIds(matchedIds,ordersPageQueryDTO)
+                :orderMapper.pageQuery(ordersPageQueryDTO);
 
         //部分订单状态，需要额外返回订单菜品信息，将Order转化为OrderVO
-        List<OrderVO> orderVOList=getOrderVOList(page);
+        List<OrderVO> orderVOList=getOrderVOList(page.getResult());
 
         return new PageResult(page.getTotal(),orderVOList);
     }
 
+    /**
+     * 订单搜索--游标分页
+     * 按(下单时间,id)定位上一页的最后一条订单，避免大偏移量的limit和count(*)
+     * @param ordersPageQueryDTO
+     * @return
+     */
+    private PageResult conditionSearchByCursor(OrdersPageQueryDTO ordersPageQueryDTO){
+        int pageSize=ordersPageQueryDTO.getPageSize()>0 ?ordersPageQueryDTO.getPageSize() :10;
+
+        //解析游标：下单时间,订单id
+        LocalDateTime cursorOrderTime=null;
+        Long cursorId=null;
+        String cursor=ordersPageQueryDTO.getCursor();
+        if(cursor !=null && !cursor.isEmpty()){
+            try{
+                String[] parts=new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(",");
+                cursorOrderTime=LocalDateTime.parse(parts[0]);
+                cursorId=Long.valueOf(parts[1]);
+            }catch (Exception e){
+                throw new OrderBusinessException(MessageConstant.PAGE_CURSOR_INVALID);
+            }
+        }
+
+        //多查询一条，用于判断是否还有下一页
+        List<Orders> ordersList=orderMapper.pageQueryByCursor(ordersPageQueryDTO,cursorOrderTime,cursorId,pageSize+1);
+
+        String nextCursor=null;
+        if(ordersList.size()>pageSize){
+            ordersList=ordersList.subList(0,pageSize);
+            Orders last=ordersList.get(pageSize-1);
+            String position=last.getOrderTime() +"," +last.getId();
+            nextCursor=Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+        }
+
+        List<OrderVO> orderVOList=getOrderVOList(ordersList);
+        return new PageResult(-1,orderVOList,nextCursor);
+    }
+
     /**
      * 返回订单菜品信息
-     * @param page
+     * @param ordersList
      * @return
      */
-    private List<OrderVO> getOrderVOList(Page<Orders> page){
+    private List<OrderVO> getOrderVOList(List<Orders> ordersList){
         //需要返回订单的菜品信息，自定义OrderVO响应结果
         List<OrderVO> orderVOList=new ArrayList<>();
 
-        List<Orders> ordersList=page.getResult();
         if(!CollectionUtils.isEmpty(ordersList)){
+            //一次性查询出当前页所有订单的明细，按订单id分组
+            Map<Long,List<OrderDetail>> orderDetailMap=getOrderDetailMap(ordersList);
+
             for(Orders orders :ordersList){
                 //将共同字段复制到OrderVO
                 OrderVO orderVO=new OrderVO();
                 BeanUtils.copyProperties(orders,orderVO);
-                String orderDishes=getOrderDishesStr(orders);
+                String orderDishes=getOrderDishesStr(orderDetailMap.getOrDefault(orders.getId(),new ArrayList<>()));
 
                 //将订单彩票信息封装到orderVO中，并添加到orderVOList
                 orderVO.setOrderDishes(orderDishes);
@@ -336,14 +529,28 @@ public class OrderServiceImpl implements OrderService {
     }
 
     /**
-     * 根据id获取菜品信息字符串
-     * @param orders
+     * 批量查询订单明细，并按订单id分组
+     * @param ordersList
      * @return
      */
-    private String getOrderDishesStr(Orders orders){
-        //查询订单菜品详细信息(订单中的菜品和数量)
-        List<OrderDetail> orderDetailList=orderDetailMapper.getByOrderId(orders.getId());
+    private Map<Long,List<OrderDetail>> getOrderDetailMap(List<Orders> ordersList){
+        if(CollectionUtils.isEmpty(ordersList)){
+            return new HashMap<>();
+        }
+
+        //select * from order_detail where order_id in (?,?,?)
+        List<Long> orderIds=ordersList.stream().map(Orders::getId).collect(Collectors.toList());
+        List<OrderDetail> orderDetailList=orderDetailMapper.getByOrderIds(orderIds);
 
+        return orderDetailList.stream().collect(Collectors.groupingBy(OrderDetail::getOrderId));
+    }
+
+    /**
+     * 根据订单明细获取菜品信息字符串
+     * @param orderDetailList
+     * @return
+     */
+    private String getOrderDishesStr(List<OrderDetail> orderDetailList){
         //将每一条订单菜品信息拼接为字符串(格式：宫保鸡丁*3)
         List<String> orderDishList=orderDetailList.stream().map(x ->{
             String orderDish =x.getName() +"*" +x.getNumber() +";";
@@ -360,17 +567,21 @@ public class OrderServiceImpl implements OrderService {
      */
     @Override
     public OrderStatisticsVO statistics() {
-        //根据状态，分别查询出待接单、待派送、派送中、已完成、已取消的订单数量
+        //按订单状态分组统计，一次查询出待接单、待派送、派送中、已完成、已取消的订单数量
+        List<OrderStatusCountDTO> statusCountList=orderMapper.countGroupByStatus(new HashMap());
+        Map<Integer,Integer> statusCountMap=statusCountList.stream()
+                .collect(Collectors.toMap(OrderStatusCountDTO::getStatus,OrderStatusCountDTO::getCount));
+
         //待接单
-        Integer toBeConfirmed= orderMapper.countStatus(Orders.TO_BE_CONFIRMED);
+        Integer toBeConfirmed=statusCountMap.getOrDefault(Orders.TO_BE_CONFIRMED,0);
         //待派送
-        Integer confirmed=orderMapper.countStatus(Orders.CONFIRMED);
+        Integer confirmed=statusCountMap.getOrDefault(Orders.CONFIRMED,0);
         //派送中
-        Integer deliveryInProgress=orderMapper.countStatus(Orders.DELIVERY_IN_PROGRESS);
+        Integer deliveryInProgress=statusCountMap.getOrDefault(Orders.DELIVERY_IN_PROGRESS,0);
         //已完成
-        Integer completed=orderMapper.countStatus(Orders.COMPLETED);
+        Integer completed=statusCountMap.getOrDefault(Orders.COMPLETED,0);
         //已取消
-        Integer cancelled=orderMapper.countStatus(Orders.CANCELLED);
+        Integer cancelled=statusCountMap.getOrDefault(Orders.CANCELLED,0);
 
         //将查询出的数据封装到orderStatisticsVO中响应
         OrderStatisticsVO orderStatisticsVO=new OrderStatisticsVO();
@@ -437,6 +648,9 @@ public class OrderServiceImpl implements OrderService {
     public void cancel(OrdersCancelDTO ordersCancelDTO) {
         //根据id查询订单
         Orders ordersDB=orderMapper.getById(ordersCancelDTO.getId());
+        if(ordersDB ==null){
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
 
         //支付状态
         Integer payStatus= ordersDB.getPayStatus();
@@ -445,13 +659,16 @@ public class OrderServiceImpl implements OrderService {
             log.info("商家申请退款-------");
         }
 
-        //管理端取消订单需要退款，根据订单id更新订单状态、取消原因、取消时间
-        Orders orders=new Orders();
-        orders.setId(ordersCancelDTO.getId());
-        orders.setStatus(Orders.CANCELLED);
-        orders.setCancelReason(ordersCancelDTO.getCancelReason());
-        orders.setCancelTime(LocalDateTime.now());
-        orderMapper.update(orders);
+        //管理端取消订单需要退款，只有订单仍处于查询时的状态才修改订单状态、取消原因、取消时间
+        Integer count=orderMapper.cancelByIds(Collections.singletonList(ordersDB.getId()),ordersDB.getStatus(),
+                Orders.CANCELLED,ordersCancelDTO.getCancelReason(),LocalDateTime.now());
+        if(count ==0){
+            //订单状态已被并发修改，统计数据由修改状态的一方调整
+            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        }
+
+        //已完成的订单被取消时，扣减当天的有效订单数和营业额
+        businessStatsService.orderStatusChanged(ordersDB,Orders.CANCELLED);
     }
 
     /**
@@ -484,13 +701,15 @@ public class OrderServiceImpl implements OrderService {
             throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
         }
 
-        Orders orders=new Orders();
-        orders.setId(ordersDB.getId());
-        //更新订单状态，状态转为派送中
-        orders.setStatus(Orders.COMPLETED);
-        orders.setDeliveryTime(LocalDateTime.now());
+        //只有仍处于派送中的订单才修改为已完成，并发完成同一订单时只有一方修改成功
+        Integer count=orderMapper.updateStatusByIds(Collections.singletonList(ordersDB.getId()),
+                Orders.DELIVERY_IN_PROGRESS,Orders.COMPLETED,LocalDateTime.now());
+        if(count ==0){
+            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        }
 
-        orderMapper.update(orders);
+        //累加当天的有效订单数和营业额
+        businessStatsService.orderStatusChanged(ordersDB,Orders.COMPLETED);
     }
 
 
@@ -514,6 +733,107 @@ public class OrderServiceImpl implements OrderService {
         map.put("content","订单号: "+ordersDB.getNumber());
 
         //通过WebSocket向客户端浏览器推送消息
-        webSocketServer.sendTOAllClient(JSON.toJSONString(map));
+        webSocketServer.sendToTopic(WebSocketServer.TOPIC_MERCHANT,map);
+    }
+
+    /**
+     * 批量接单
+     * @param ids
+     * @return 实际接单的订单数量
+     */
+    @Override
+    public Integer batchConfirm(List<Long> ids) {
+        return batchUpdateStatus(ids,Orders.TO_BE_CONFIRMED,Orders.CONFIRMED);
+    }
+
+    /**
+     * 批量完成订单
+     * @param ids
+     * @return 实际完成的订单数量
+     */
+    @Override
+    public Integer batchComplete(List<Long> ids) {
+        return batchUpdateStatus(ids,Orders.DELIVERY_IN_PROGRESS,Orders.COMPLETED);
+    }
+
+    /**
+     * 将下单时间早于指定时间且一直处于派送中的订单分批修改为已完成
+     * @param time
+     * @return 修改的订单数量
+     */
+    @Override
+    public Integer completeDeliveryOrders(LocalDateTime time) {
+        int count=0;
+        Long lastId=0L;
+        while(true){
+            //按id游标分批查询，避免一次性将所有订单加载到内存
+            List<Orders> ordersList=orderMapper.listByStatusAndOrderTimeLT(Orders.DELIVERY_IN_PROGRESS,time,lastId,BATCH_UPDATE_SIZE);
+            if(ordersList.isEmpty()){
+                break;
+            }
+
+            count +=updateStatus(ordersList,Orders.DELIVERY_IN_PROGRESS,Orders.COMPLETED);
+            lastId=ordersList.get(ordersList.size()-1).getId();
+
+            if(ordersList.size()<BATCH_UPDATE_SIZE){
+                break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 按批次修改指定订单的状态
+     * @param ids
+     * @param fromStatus 订单当前应处的状态
+     * @param toStatus 修改后的状态
+     * @return 修改的订单数量
+     */
+    private int batchUpdateStatus(List<Long> ids,Integer fromStatus,Integer toStatus){
+        int count=0;
+        for (int i = 0; i < ids.size(); i += BATCH_UPDATE_SIZE) {
+            List<Long> batchIds=ids.subList(i,Math.min(i+BATCH_UPDATE_SIZE,ids.size()));
+            List<Orders> ordersList=orderMapper.getByIds(batchIds);
+            count +=updateStatus(ordersList,fromStatus,toStatus);
+        }
+        return count;
+    }
+
+    /**
+     * 将一批订单中处于指定状态的订单修改为新状态，一条update语句完成
+     * @param ordersList
+     * @param fromStatus 订单当前应处的状态
+     * @param toStatus 修改后的状态
+     * @return 修改的订单数量
+     */
+    private int updateStatus(List<Orders> ordersList,Integer fromStatus,Integer toStatus){
+        List<Orders> matchedList=ordersList.stream()
+                .filter(orders -> fromStatus.equals(orders.getStatus()))
+                .collect(Collectors.toList());
+        if(matchedList.isEmpty()){
+            return 0;
+        }
+
+        List<Long> ids=matchedList.stream().map(Orders::getId).collect(Collectors.toList());
+        LocalDateTime deliveryTime=Orders.COMPLETED.equals(toStatus) ?LocalDateTime.now() :null;
+
+        //锁定仍处于原状态的订单后再修改，只为实际修改的订单累加汇总数据，避免并发修改时重复累加
+        Integer count=transactionTemplate.execute(status -> {
+            List<Long> lockedIds=orderMapper.lockIdsByStatus(ids,fromStatus);
+            if(lockedIds.isEmpty()){
+                return 0;
+            }
+            int updated=orderMapper.updateStatusByIds(lockedIds,fromStatus,toStatus,deliveryTime);
+
+            if(Orders.COMPLETED.equals(toStatus)){
+                //累加下单当天的有效订单数和营业额
+                Set<Long> lockedIdSet=new HashSet<>(lockedIds);
+                businessStatsService.ordersCompleted(matchedList.stream()
+                        .filter(orders -> lockedIdSet.contains(orders.getId()))
+                        .collect(Collectors.toList()));
+            }
+            return updated;
+        });
+        return count;
     }
 }
@@ -1,16 +1,20 @@
 package com.sky.service.impl;
 
+import com.sky.constant.MessageConstant;
 import com.sky.dto.GoodsSalesDTO;
-import com.sky.entity.Orders;
+import com.sky.entity.DailyBusinessStats;
+import com.sky.exception.ReportBusinessException;
+import com.sky.mapper.DailyBusinessStatsMapper;
 import com.sky.mapper.OrderMapper;
-import com.sky.mapper.UserMapper;
+import com.sky.report.BusinessDataCalculator;
 import com.sky.service.ReportService;
-import com.sky.service.WorkSpaceService;
 import com.sky.vo.*;
 import lombok.extern.slf4j.Slf4j;
-import net.bytebuddy.asm.Advice;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.poi.util.StringUtil;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.xssf.streaming.SXSSFRow;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFRow;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
@@ -24,8 +28,8 @@ import java.io.InputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -34,15 +38,22 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ReportServiceImpl implements ReportService {
 
+    //导出报表中明细数据的起始行号，以及明细数据占用的列
+    private static final int DETAIL_FIRST_ROW = 7;
+    private static final int DETAIL_FIRST_CELL = 1;
+    private static final int DETAIL_LAST_CELL = 6;
 
-    @Autowired
-    private OrderMapper orderMapper;
+    //流式写入报表时内存中保留的行数
+    private static final int ROW_ACCESS_WINDOW_SIZE = 100;
+
+    //一次最多导出的天数
+    private static final int MAX_EXPORT_DAYS = 366;
 
     @Autowired
-    private UserMapper userMapper;
+    private OrderMapper orderMapper;
 
     @Autowired
-    private WorkSpaceService workSpaceService;
+    private DailyBusinessStatsMapper dailyBusinessStatsMapper;
 
     /**
      * 统计指定时间区间内的营业额数据
@@ -52,30 +63,16 @@ public class ReportServiceImpl implements ReportService {
      */
     public TurnoverReportVO getTurnoverStatistics(LocalDate begin, LocalDate end) {
         //当前集合用于存放begin~end范围内的每天的日期
-        List<LocalDate> dateList=new ArrayList<>();
+        List<LocalDate> dateList=getDateList(begin,end);
 
-        dateList.add(begin);
+        //从每日汇总表中查询区间内每天的营业额，营业额是指：状态为"已完成"的订单金额合计
+        Map<LocalDate,DailyBusinessStats> dailyStatsMap=getDailyStatsMap(begin,end);
 
-        while(!begin.equals(end)){
-            //日期计算  计算指定日期的后一天对应的日期
-            begin=begin.plusDays(1);
-            dateList.add(begin);
-        }
-
-        //存放每天的营业额
+        //存放每天的营业额，没有汇总数据的日期补0
         List<Double> turnoverList=new ArrayList<>();
         for (LocalDate date : dateList) {
-            //查询Date日期对应的营业额数据，营业额是指：状态为"已完成"的订单金额合计
-            LocalDateTime beginTime=LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime=LocalDateTime.of(date, LocalTime.MAX);
-
-            //select sum(amount) from orders where order_time >beginTime and order_time <endTime and status=5
-            Map map=new HashMap();
-            map.put("begin",beginTime);
-            map.put("end",endTime);
-            map.put("status", Orders.COMPLETED);
-            Double turnover=orderMapper.sumByMap(map);
-            turnoverList.add(turnover);
+            DailyBusinessStats dailyStats=dailyStatsMap.get(date);
+            turnoverList.add(dailyStats ==null ?0.0 :dailyStats.getTurnover().doubleValue());
         }
         return TurnoverReportVO
                 .builder()
@@ -93,33 +90,23 @@ public class ReportServiceImpl implements ReportService {
      */
     public UserReportVO getUserStatistics(LocalDate begin, LocalDate end) {
         //查询从begin~end 之间的每天对应的日期
-        List<LocalDate> dateList=new ArrayList<>();
+        List<LocalDate> dateList=getDateList(begin,end);
 
-        dateList.add(begin);
+        //区间开始之前的用户总量，由汇总表中之前每天的新增用户数累加得到
+        Integer totalUser=dailyBusinessStatsMapper.sumNewUsersBefore(begin);
 
-        while (!begin.equals(end)){
-            begin=begin.plusDays(1);
-            dateList.add(begin);
-        }
+        //从每日汇总表中查询区间内每天的新增用户数量
+        Map<LocalDate,DailyBusinessStats> dailyStatsMap=getDailyStatsMap(begin,end);
 
-        //存放每天的新增用户数量 select count(id) from user where create_time <? and create_time >?
+        //存放每天的新增用户数量
         List<Integer> newUserList=new ArrayList<>();
-        //存放每天的总用户数量 select count(id) from user where create_time <?
+        //存放每天的总用户数量，由区间开始前的总量逐天累加新增用户得到
         List<Integer> totalUserList=new ArrayList<>();
 
         for (LocalDate date : dateList) {
-            LocalDateTime beginTime= LocalDateTime.of(date,LocalTime.MIN);
-            LocalDateTime endTime= LocalDateTime.of(date,LocalTime.MAX);
-
-            Map map=new HashMap();
-            map.put("end",endTime);
-
-            //总用户数量
-            Integer totalUser=userMapper.countByMap(map);
-
-            map.put("begin",beginTime);
-            //新增用户数量
-            Integer newUser=userMapper.countByMap(map);
+            DailyBusinessStats dailyStats=dailyStatsMap.get(date);
+            Integer newUser=dailyStats ==null ?0 :dailyStats.getNewUsers();
+            totalUser +=newUser;
 
             totalUserList.add(totalUser);
             newUserList.add(newUser);
@@ -130,7 +117,7 @@ public class ReportServiceImpl implements ReportService {
                 .builder()
                 .dateList(org.apache.commons.lang3.StringUtils.join(dateList,","))
                 .totalUserList(org.apache.commons.lang3.StringUtils.join(totalUserList,","))
-                .newUserList(StringUtil.join(",", newUserList))
+                .newUserList(org.apache.commons.lang3.StringUtils.join(newUserList,","))
                 .build();
     }
 
@@ -143,32 +130,21 @@ public class ReportServiceImpl implements ReportService {
      */
     public OrderReportVO getOrderStatistics(LocalDate begin, LocalDate end) {
         //查询从begin~end 之间的每天对应的日期
-        List<LocalDate> dateList=new ArrayList<>();
+        List<LocalDate> dateList=getDateList(begin,end);
 
-        dateList.add(begin);
-
-        while (!begin.equals(end)){
-            begin=begin.plusDays(1);
-            dateList.add(begin);
-        }
+        //从每日汇总表中查询区间内每天的订单总数和有效订单数
+        Map<LocalDate,DailyBusinessStats> dailyStatsMap=getDailyStatsMap(begin,end);
 
         //存放每天的订单总数
         List<Integer> orderCountList=new ArrayList<>();
         //存放每天的有效订单数
         List<Integer> validOrderCountList=new ArrayList<>();
 
-        //遍历dateList集合，查询每天的有效订单数和订单总数
+        //遍历dateList集合，没有汇总数据的日期补0
         for (LocalDate date : dateList) {
-            //查询每天的订单总数 select count(id) from orders where order_time> ? and order_time<?
-            LocalDateTime beginTime=LocalDateTime.of(date,LocalTime.MIN);
-            LocalDateTime endTime=LocalDateTime.of(date,LocalTime.MAX);
-            Integer orderCount=getOrderCount(beginTime,endTime,null);
-
-            //查询每天的有效订单数 select count(id) from orders where order_time>? and order_time <? and status=5
-            Integer validOrderCount=getOrderCount(beginTime,endTime,Orders.COMPLETED);
-
-            orderCountList.add(orderCount);
-            validOrderCountList.add(validOrderCount);
+            DailyBusinessStats dailyStats=dailyStatsMap.get(date);
+            orderCountList.add(dailyStats ==null ?0 :dailyStats.getTotalOrderCount());
+            validOrderCountList.add(dailyStats ==null ?0 :dailyStats.getValidOrderCount());
         }
 
         //计算时间区间内的订单总数量
@@ -195,19 +171,29 @@ public class ReportServiceImpl implements ReportService {
     }
 
     /**
-     * 根据条件统计订单数量
+     * 获取begin~end范围内的每天的日期
      * @param begin
      * @param end
-     * @param status
      * @return
      */
-    private Integer getOrderCount(LocalDateTime begin,LocalDateTime end,Integer status){
-        Map map=new HashMap();
-        map.put("begin",begin);
-        map.put("end",end);
-        map.put("status",status);
+    private List<LocalDate> getDateList(LocalDate begin,LocalDate end){
+        List<LocalDate> dateList=new ArrayList<>();
+        for (LocalDate date=begin; !date.isAfter(end); date=date.plusDays(1)) {
+            dateList.add(date);
+        }
+        return dateList;
+    }
 
-        return orderMapper.countByMap(map);
+    /**
+     * 从每日汇总表中查询begin~end范围内每天的营业数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    private Map<LocalDate,DailyBusinessStats> getDailyStatsMap(LocalDate begin,LocalDate end){
+        List<DailyBusinessStats> dailyStatsList=dailyBusinessStatsMapper.listByDateRange(begin,end);
+        return dailyStatsList.stream()
+                .collect(Collectors.toMap(DailyBusinessStats::getBizDate,dailyStats ->dailyStats));
     }
 
     /**
@@ -238,25 +224,46 @@ public class ReportServiceImpl implements ReportService {
 
     /**
      * 导出运营数据报表
+     * @param begin
+     * @param end
      * @param response
      */
-    public void exportBusinessData(HttpServletResponse response) {
-        //1.查询数据库,获得营业数据--查询最近30天的运营数据
-        LocalDate dateBegin=LocalDate.now().minusDays(30);
-        LocalDate dateEnd=LocalDate.now().minusDays(1);
+    public void exportBusinessData(LocalDate begin, LocalDate end, HttpServletResponse response) {
+        //1.查询数据库,获得营业数据--默认查询最近30天的运营数据
+        LocalDate dateBegin=begin !=null ?begin :LocalDate.now().minusDays(30);
+        LocalDate dateEnd=end !=null ?end :LocalDate.now().minusDays(1);
+        if(dateBegin.isAfter(dateEnd)){
+            throw new ReportBusinessException(MessageConstant.REPORT_DATE_RANGE_INVALID);
+        }
+        //限制导出的天数，避免一次导出过多明细行
+        if(ChronoUnit.DAYS.between(dateBegin,dateEnd)>=MAX_EXPORT_DAYS){
+            throw new ReportBusinessException(MessageConstant.REPORT_DATE_RANGE_TOO_LONG);
+        }
 
-        //查询概览数据
-        BusinessDataVO businessDataVO=workSpaceService.getBusinessData(LocalDateTime.of(dateBegin,LocalTime.MIN),LocalDateTime.of(dateEnd,LocalTime.MAX));
+        //一次查询出区间内每天的汇总数据，概览数据由明细累加得到
+        Map<LocalDate,DailyBusinessStats> dailyStatsMap=getDailyStatsMap(dateBegin,dateEnd);
+        double turnover=0.0;
+        int totalOrderCount=0;
+        int validOrderCount=0;
+        int newUsers=0;
+        for (DailyBusinessStats dailyStats : dailyStatsMap.values()) {
+            turnover +=dailyStats.getTurnover().doubleValue();
+            totalOrderCount +=dailyStats.getTotalOrderCount();
+            validOrderCount +=dailyStats.getValidOrderCount();
+            newUsers +=dailyStats.getNewUsers();
+        }
+        BusinessDataVO businessDataVO=BusinessDataCalculator.calculate(turnover,totalOrderCount,validOrderCount,newUsers);
 
         //2.通过POI将数据写入到Excel文件中
         InputStream in=this.getClass().getClassLoader().getResourceAsStream("template/operationalDataReportTemplate.xlsx");
 
+        SXSSFWorkbook excel=null;
         try{
             //基于模板文件创建一个新的Excel文件
-            XSSFWorkbook  excel=new XSSFWorkbook(in);
+            XSSFWorkbook template=new XSSFWorkbook(in);
 
             //获取表格文件的Sheet页
-            XSSFSheet sheet=excel.getSheet("Sheet1");
+            XSSFSheet sheet=template.getSheet("Sheet1");
 
             //填充数据--时间
             sheet.getRow(1).getCell(1).setCellValue("时间"+dateBegin+"至"+dateEnd);
@@ -272,20 +279,40 @@ public class ReportServiceImpl implements ReportService {
             row.getCell(2).setCellValue(businessDataVO.getValidOrderCount());
             row.getCell(4).setCellValue(businessDataVO.getUnitPrice());
 
+            //记录明细行的样式，并删除模板中预留的明细行，明细行改由流式写入
+            XSSFRow styleRow=sheet.getRow(DETAIL_FIRST_ROW);
+            float rowHeight=styleRow.getHeightInPoints();
+            CellStyle[] cellStyles=new CellStyle[DETAIL_LAST_CELL+1];
+            for (int i = DETAIL_FIRST_CELL; i <= DETAIL_LAST_CELL; i++) {
+                cellStyles[i]=styleRow.getCell(i).getCellStyle();
+            }
+            for (int i = sheet.getLastRowNum(); i >= DETAIL_FIRST_ROW; i--) {
+                sheet.removeRow(sheet.getRow(i));
+            }
+
+            //基于模板创建流式写入的Excel文件，内存中只保留最近的若干行
+            excel=new SXSSFWorkbook(template,ROW_ACCESS_WINDOW_SIZE);
+            SXSSFSheet detailSheet=excel.getSheet("Sheet1");
+
             //填充明细数据
-            for (int i = 0; i < 30; i++) {
-                LocalDate date=dateBegin.plusDays(1);
-                //查询某一天的营业数据
-                BusinessDataVO businessData=workSpaceService.getBusinessData(LocalDateTime.of(date,LocalTime.MIN),LocalDateTime.of(date,LocalTime.MAX));
-
-                //获得某一行
-                row=sheet.getRow(7+i);
-                row.getCell(1).setCellValue(date.toString());
-                row.getCell(2).setCellValue(businessData.getTurnover());
-                row.getCell(3).setCellValue(businessData.getValidOrderCount());
-                row.getCell(4).setCellValue(businessData.getOrderCompletionRate());
-                row.getCell(5).setCellValue(businessData.getUnitPrice());
-                row.getCell(6).setCellValue(businessData.getNewUsers());
+            int rowNum=DETAIL_FIRST_ROW;
+            for (LocalDate date=dateBegin; !date.isAfter(dateEnd); date=date.plusDays(1)) {
+                //某一天的营业数据
+                DailyBusinessStats dailyStats=dailyStatsMap.get(date);
+                BusinessDataVO businessData=BusinessDataCalculator.calculate(dailyStats);
+
+                //创建某一行
+                SXSSFRow detailRow=detailSheet.createRow(rowNum++);
+                detailRow.setHeightInPoints(rowHeight);
+                for (int i = DETAIL_FIRST_CELL; i <= DETAIL_LAST_CELL; i++) {
+                    detailRow.createCell(i).setCellStyle(cellStyles[i]);
+                }
+                detailRow.getCell(1).setCellValue(date.toString());
+                detailRow.getCell(2).setCellValue(businessData.getTurnover());
+                detailRow.getCell(3).setCellValue(businessData.getValidOrderCount());
+                detailRow.getCell(4).setCellValue(businessData.getOrderCompletionRate());
+                detailRow.getCell(5).setCellValue(businessData.getUnitPrice());
+                detailRow.getCell(6).setCellValue(businessData.getNewUsers());
             }
 
             //3.通过输出流将Excel文件下载到客户端浏览器
@@ -298,6 +325,11 @@ public class ReportServiceImpl implements ReportService {
 
         } catch (IOException e){
             e.printStackTrace();
+        } finally {
+            //删除流式写入产生的临时文件
+            if(excel !=null){
+                excel.dispose();
+            }
         }
 
     }
@@ -2,6 +2,7 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.TwoLevelCache;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.SetmealDTO;
@@ -14,6 +15,7 @@ import com.sky.exception.SetmealEnableFailedException;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealDishMapper;
 import com.sky.mapper.SetmealMapper;
+import com.sky.menu.MenuSnapshot;
 import com.sky.result.PageResult;
 import com.sky.service.SetmealService;
 import com.sky.vo.SetmealVO;
@@ -23,7 +25,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -35,6 +41,12 @@ public class SetmealServiceImpl implements SetmealService {
     private SetmealDishMapper  setmealDishMapper;
     @Autowired
     private DishMapper dishMapper;
+    @Autowired
+    private MenuSnapshot menuSnapshot;
+    @Autowired
+    private TwoLevelCache setmealListCache;
+    @Autowired
+    private TwoLevelCache setmealDetailCache;
 
     public List<Setmeal> list(Setmeal setmeal) {
         List<Setmeal> list=setmealMapper.list(setmeal);
@@ -73,6 +85,10 @@ public class SetmealServiceImpl implements SetmealService {
 
         //保存套餐和菜品的关联关系  动态sql批量插入
         setmealDishMapper.insertBatch(setmealDishes);
+
+        menuSnapshot.changed();
+        //只清理新增套餐所属分类的缓存
+        reloadSetmealListCache(setmeal.getCategoryId());
     }
 
     /**
@@ -98,6 +114,14 @@ public class SetmealServiceImpl implements SetmealService {
                 .status(status)
                 .build();
         setmealMapper.update(setmeal);
+
+        menuSnapshot.changed();
+        //起售停售会改变C端套餐列表，清理套餐所属分类的列表缓存和套餐详情缓存
+        Setmeal setmealDB=setmealMapper.getById(id);
+        if(setmealDB!=null){
+            reloadSetmealListCache(setmealDB.getCategoryId());
+        }
+        setmealDetailCache.evictAfterCommit(Collections.singletonList(detailKey(id)));
     }
 
     /**
@@ -128,8 +152,10 @@ public class SetmealServiceImpl implements SetmealService {
         //判断当前套餐是否能够删除--是否存在起售中的套餐？
         //思路：遍历获取传入的id  根据id查询setmeal中的status  0停售 1起售
         //如果是1代表是起售状态不能删除
+        Set<Long> categoryIds=new HashSet<>();
         ids.forEach(id ->{
             Setmeal setmeal=setmealMapper.getById(id);
+            categoryIds.add(setmeal.getCategoryId());
             if(StatusConstant.ENABLE==setmeal.getStatus()){
                 //起售中的套餐不能删除
                 throw new DeletionNotAllowedException(MessageConstant.SETMEAL_ON_SALE);
@@ -143,6 +169,11 @@ public class SetmealServiceImpl implements SetmealService {
             //删除套餐菜品关系表中的数据
             setmealDishMapper.deleteBySetmealId(setmealId);
         });
+
+        menuSnapshot.changed();
+        //清理被删除套餐所属分类的列表缓存和套餐详情缓存
+        categoryIds.forEach(this::reloadSetmealListCache);
+        setmealDetailCache.evictAfterCommit(ids.stream().map(this::detailKey).collect(Collectors.toList()));
     }
 
     /**
@@ -152,6 +183,16 @@ public class SetmealServiceImpl implements SetmealService {
      */
     @Override
     public SetmealVO getByIdWithDish(Long id) {
+        //先查询缓存，未命中再查询数据库并放入缓存
+        return (SetmealVO) setmealDetailCache.get(detailKey(id),() -> loadWithDish(id));
+    }
+
+    /**
+     * 从数据库查询套餐和套餐菜品关系
+     * @param id
+     * @return
+     */
+    private SetmealVO loadWithDish(Long id) {
         //根据id查询套餐表信息
         Setmeal setmeal=setmealMapper.getById(id);
         //根据id查询套餐菜品关系表数据
@@ -172,6 +213,9 @@ public class SetmealServiceImpl implements SetmealService {
     @Override
     @Transactional
     public void update(SetmealDTO setmealDTO) {
+        //修改前的分类，套餐可能被移动到其他分类
+        Setmeal setmealDB=setmealMapper.getById(setmealDTO.getId());
+
         Setmeal setmeal=new Setmeal();
         BeanUtils.copyProperties(setmealDTO,setmeal);
 
@@ -194,5 +238,37 @@ public class SetmealServiceImpl implements SetmealService {
         //重新插入套餐和菜品的关联关系，操作setmeal_dish表，执行insert
         //动态sql批量插入
         setmealDishMapper.insertBatch(setmealDishes);
+
+        menuSnapshot.changed();
+        //清理修改前后所属分类的列表缓存，并重新加载套餐详情缓存
+        Set<Long> categoryIds=new HashSet<>();
+        categoryIds.add(setmealDB.getCategoryId());
+        if(setmealDTO.getCategoryId()!=null){
+            categoryIds.add(setmealDTO.getCategoryId());
+        }
+        categoryIds.forEach(this::reloadSetmealListCache);
+        setmealDetailCache.evictAndReload(detailKey(setmealId),() -> loadWithDish(setmealId));
+    }
+
+    /**
+     * 清理指定分类的C端套餐列表缓存，并异步重新加载该分类的起售套餐
+     * @param categoryId
+     */
+    private void reloadSetmealListCache(Long categoryId){
+        setmealListCache.evictAndReload("setmeal_"+categoryId,() -> {
+            Setmeal setmeal=new Setmeal();
+            setmeal.setCategoryId(categoryId);
+            setmeal.setStatus(StatusConstant.ENABLE);
+            return setmealMapper.list(setmeal);
+        });
+    }
+
+    /**
+     * 套餐详情缓存的key 规则：setmeal_detail_套餐id
+     * @param id
+     * @return
+     */
+    private String detailKey(Long id){
+        return "setmeal_detail_"+id;
     }
 }
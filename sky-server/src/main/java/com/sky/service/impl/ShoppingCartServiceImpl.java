@@ -1,20 +1,19 @@
 package com.sky.service.impl;
 
+import com.sky.cart.ShoppingCartStore;
+import com.sky.constant.MessageConstant;
+import com.sky.constant.StatusConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.ShoppingCartDTO;
-import com.sky.entity.Dish;
-import com.sky.entity.Setmeal;
 import com.sky.entity.ShoppingCart;
-import com.sky.mapper.DishMapper;
-import com.sky.mapper.SetmealMapper;
-import com.sky.mapper.ShoppingCartMapper;
+import com.sky.exception.ShoppingCartBusinessException;
+import com.sky.menu.MenuItem;
+import com.sky.menu.MenuSnapshot;
 import com.sky.service.ShoppingCartService;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.util.List;
 
 @Service
@@ -22,52 +21,25 @@ import java.util.List;
 public class ShoppingCartServiceImpl implements ShoppingCartService {
 
     @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
+    private ShoppingCartStore shoppingCartStore;
     @Autowired
-    private SetmealMapper setmealMapper;
-    @Autowired
-    private DishMapper dishMapper;
+    private MenuSnapshot menuSnapshot;
 
     /**
-     * 添加购物车
+     * 添加购物车，购物车中已有该商品时数量加一
      * @param shoppingCartDTO
      */
     public void addShoppingCart(ShoppingCartDTO shoppingCartDTO) {
-        //判断当前加入到购物车中的商品是否已经存在了
-        ShoppingCart shoppingCart = new ShoppingCart();
-        BeanUtils.copyProperties(shoppingCartDTO,shoppingCart);
-        Long userId = BaseContext.getCurrentId();
-        shoppingCart.setUserId(userId);
-
-        List<ShoppingCart> list =shoppingCartMapper.list(shoppingCart);
-
-        //如果已经存在了，只需要将数量加一
-        if(list !=null && list.size()>0){
-            ShoppingCart cart=list.get(0);
-            cart.setNumber(cart.getNumber()+1); //update shopping_cart set number =? where id=?
-            shoppingCartMapper.updateNumberById(cart);
-        }else{
-            //如果不存在，需要插入一条购物车数据
-            //判断本次添加到购物车的是菜品还是套餐
-            Long dishId =shoppingCartDTO.getDishId();
-            if(dishId !=null){
-                //本次添加到购物车的是菜品
-                Dish dish=dishMapper.getById(dishId);
-                shoppingCart.setName(dish.getName());
-                shoppingCart.setImage(dish.getImage());
-                shoppingCart.setAmount(dish.getPrice());
-            }else{
-                //本次添加到购物车的是套餐
-                Long setmealId=shoppingCartDTO.getSetmealId();
-                Setmeal setmeal=setmealMapper.getById(setmealId);
-                shoppingCart.setName(setmeal.getName());
-                shoppingCart.setImage(setmeal.getImage());
-                shoppingCart.setAmount(setmeal.getPrice());
-            }
-            shoppingCart.setNumber(1);
-            shoppingCart.setCreateTime(LocalDateTime.now());
-            shoppingCartMapper.insert(shoppingCart);
+        //根据菜单快照判断菜品或套餐是否存在且起售中
+        MenuItem menuItem=shoppingCartDTO.getDishId()!=null
+                ?menuSnapshot.getDish(shoppingCartDTO.getDishId())
+                :menuSnapshot.getSetmeal(shoppingCartDTO.getSetmealId());
+        if(menuItem==null || !StatusConstant.ENABLE.equals(menuItem.getStatus())){
+            throw new ShoppingCartBusinessException(MessageConstant.CART_ITEM_NOT_ON_SALE);
         }
+
+        Long userId = BaseContext.getCurrentId();
+        shoppingCartStore.increment(userId,shoppingCartDTO.getDishId(),shoppingCartDTO.getSetmealId(),shoppingCartDTO.getDishFlavor(),1);
     }
 
     /**
@@ -77,11 +49,8 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
     public List<ShoppingCart> showShoppingCart() {
         //获取当前用户id
         Long userId =BaseContext.getCurrentId();
-        ShoppingCart shoppingCart=ShoppingCart.builder()
-                .userId(userId)
-                .build();
-        List<ShoppingCart> list=shoppingCartMapper.list(shoppingCart);
-        return list;
+        //菜单中已删除的商品在读取时已从购物车中移除，停售的商品仍然展示，下单时提示
+        return shoppingCartStore.list(userId);
     }
 
     /**
@@ -90,6 +59,6 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
     public void cleanShoppingCart() {
         //获取当前用户id
         Long userId =BaseContext.getCurrentId();
-        shoppingCartMapper.deleteByUserId(userId);
+        shoppingCartStore.clean(userId);
     }
 }
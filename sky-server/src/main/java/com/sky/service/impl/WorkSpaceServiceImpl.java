@@ -1,11 +1,14 @@
 package com.sky.service.impl;
 
 import com.sky.constant.StatusConstant;
+import com.sky.dto.OrderStatusCountDTO;
+import com.sky.entity.DailyBusinessStats;
 import com.sky.entity.Orders;
+import com.sky.mapper.DailyBusinessStatsMapper;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.OrderMapper;
 import com.sky.mapper.SetmealMapper;
-import com.sky.mapper.UserMapper;
+import com.sky.report.BusinessDataCalculator;
 import com.sky.service.WorkSpaceService;
 import com.sky.vo.BusinessDataVO;
 import com.sky.vo.DishOverViewVO;
@@ -18,7 +21,9 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 public class WorkSpaceServiceImpl implements WorkSpaceService {
@@ -28,9 +33,9 @@ public class WorkSpaceServiceImpl implements WorkSpaceService {
     @Autowired
     private OrderMapper orderMapper;
     @Autowired
-    private UserMapper userMapper;
-    @Autowired
     private DishMapper dishMapper;
+    @Autowired
+    private DailyBusinessStatsMapper dailyBusinessStatsMapper;
 
     /**
      * 根据时间段统计营业数据
@@ -46,42 +51,9 @@ public class WorkSpaceServiceImpl implements WorkSpaceService {
          * 平均客单价:unitPrice
          * 新增用户:newUsers
          */
-        Map map=new HashMap();
-        map.put("begin",begin);
-        map.put("end",end);
-
-        //查询总订单数
-        Integer totalOrderCount=orderMapper.countByMap(map);
-
-        map.put("status", Orders.COMPLETED);
-        //营业额
-        Double turnover=orderMapper.sumByMap(map);
-        turnover=turnover ==null?0.0:turnover;
-
-        //有效订单数
-        Integer validOrderCount=orderMapper.countByMap(map);
-
-        Double unitPrice=0.0;
-
-        Double orderCompletionRate=0.0;
-        if(totalOrderCount !=0 && validOrderCount !=0){
-            //订单完成率
-            orderCompletionRate=validOrderCount.doubleValue()/totalOrderCount;
-            //平均客单价
-            unitPrice=turnover /validOrderCount;
-        }
-
-        //新增用户数
-        Integer newUsers=userMapper.countByMap(map);
-
-
-        return BusinessDataVO.builder()
-                .turnover(turnover)
-                .validOrderCount(validOrderCount)
-                .orderCompletionRate(orderCompletionRate)
-                .unitPrice(unitPrice)
-                .newUsers(newUsers)
-                .build();
+        //从每日汇总表中汇总区间内的营业数据
+        DailyBusinessStats stats=dailyBusinessStatsMapper.sumByDateRange(begin.toLocalDate(),end.toLocalDate());
+        return BusinessDataCalculator.calculate(stats);
     }
 
     /**
@@ -91,26 +63,26 @@ public class WorkSpaceServiceImpl implements WorkSpaceService {
     public OrderOverViewVO getOrderOverView() {
         Map map=new HashMap();
         map.put("begin",LocalDateTime.now().with(LocalTime.MIN));
-        map.put("status",Orders.TO_BE_CONFIRMED);
+
+        //按订单状态分组统计今日订单数量
+        List<OrderStatusCountDTO> statusCountList=orderMapper.countGroupByStatus(map);
+        Map<Integer,Integer> statusCountMap=statusCountList.stream()
+                .collect(Collectors.toMap(OrderStatusCountDTO::getStatus,OrderStatusCountDTO::getCount));
 
         //待接单
-        Integer waitingOrders=orderMapper.countByMap(map);
+        Integer waitingOrders=statusCountMap.getOrDefault(Orders.TO_BE_CONFIRMED,0);
 
         //待派送
-        map.put("status",Orders.CONFIRMED);
-        Integer deliveredOrders=orderMapper.countByMap(map);
+        Integer deliveredOrders=statusCountMap.getOrDefault(Orders.CONFIRMED,0);
 
         //已完成
-        map.put("status",Orders.COMPLETED);
-        Integer completedOrders=orderMapper.countByMap(map);
+        Integer completedOrders=statusCountMap.getOrDefault(Orders.COMPLETED,0);
 
         //已取消
-        map.put("status",Orders.CANCELLED);
-        Integer cancelledOrders=orderMapper.countByMap(map);
+        Integer cancelledOrders=statusCountMap.getOrDefault(Orders.CANCELLED,0);
 
         //全部订单
-        map.put("status",null);
-        Integer allOrders=orderMapper.countByMap(map);
+        Integer allOrders=statusCountMap.values().stream().mapToInt(Integer::intValue).sum();
 
         return OrderOverViewVO.builder()
                 .waitingOrders(waitingOrders)
@@ -0,0 +1,103 @@
+package com.sky.shop;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内店铺营业状态，查询营业状态时直接读取内存，不再访问redis
+ * 设置营业状态后写入redis并通过redis频道通知所有节点更新，定时从redis同步作为兜底；redis短暂不可用时继续使用内存中的状态
+ */
+@Component
+@Slf4j
+public class ShopStatus implements MessageListener {
+
+    //营业状态在redis中的key
+    public static final String KEY = "SHOP_STATUS";
+
+    //营业状态变更通知频道
+    public static final String CHANNEL = "SHOP_STATUS_CHANGED";
+
+    @Autowired
+    private RedisTemplate cacheRedisTemplate;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private volatile Integer status;
+
+    //营业状态每次被设置或收到变更通知时加1，定时同步据此判断读取redis期间状态是否已经变化
+    private final AtomicLong version = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        resync();
+    }
+
+    /**
+     * 查询营业状态
+     * @return 1为营业中，0为打烊中，从未设置过时为null
+     */
+    public Integer get() {
+        return status;
+    }
+
+    /**
+     * 设置营业状态，写入redis后更新本节点并通知其他节点
+     * @param status
+     */
+    public void set(Integer status) {
+        cacheRedisTemplate.opsForValue().set(KEY, status);
+        update(status);
+        stringRedisTemplate.convertAndSend(CHANNEL, String.valueOf(status));
+    }
+
+    /**
+     * 收到营业状态变更通知
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        update(Integer.valueOf(new String(message.getBody(), StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * 定时从redis同步营业状态，防止变更通知丢失；redis不可用时保留当前状态
+     */
+    @Scheduled(fixedDelay = 30000)
+    public void resync() {
+        long expectedVersion = version.get();
+        Integer latest;
+        try {
+            latest = (Integer) cacheRedisTemplate.opsForValue().get(KEY);
+        } catch (Exception e) {
+            log.warn("同步店铺营业状态失败，继续使用当前状态：{}", status, e);
+            return;
+        }
+        synchronized (this) {
+            //读取redis期间状态已被设置或收到变更通知，读到的值可能是旧值，丢弃
+            if (version.get() == expectedVersion) {
+                status = latest;
+            }
+        }
+    }
+
+    private synchronized void update(Integer status) {
+        version.incrementAndGet();
+        this.status = status;
+    }
+}
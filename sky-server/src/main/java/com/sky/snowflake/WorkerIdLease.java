@@ -0,0 +1,113 @@
+package com.sky.snowflake;
+
+import com.sky.utils.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 雪花算法机器id租约
+ * 未配置机器id时，从redis中租用一个没有被其他节点占用的机器id，并定时续约；节点停止后租约过期，机器id可被其他节点重新租用
+ */
+@Component
+@Slf4j
+public class WorkerIdLease {
+
+    //机器id租约key的前缀，后接机器id
+    public static final String KEY_PREFIX = "SNOWFLAKE_WORKER:";
+
+    //每次租用时递增，决定从哪个机器id开始尝试，避免各节点都从0开始争抢
+    public static final String SEQUENCE_KEY = "SNOWFLAKE_WORKER_SEQ";
+
+    //租约有效期(毫秒)，需远大于续约间隔
+    private static final long LEASE_MILLIS = 60000;
+
+    //续约：租约仍属于本节点时延长有效期，租约已过期时重新占用；被其他节点占用时返回0
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+            "  return redis.call('pexpire', KEYS[1], ARGV[2]) " +
+            "elseif redis.call('set', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then " +
+            "  return 1 " +
+            "end " +
+            "return 0", Long.class);
+
+    //释放：只删除属于本节点的租约
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+            "  return redis.call('del', KEYS[1]) " +
+            "end " +
+            "return 0", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    //本节点的租约标识
+    private final String owner = UUID.randomUUID().toString();
+
+    //已租用的机器id，未租用时为null
+    private volatile Long workerId;
+
+    /**
+     * 租用一个空闲的机器id，所有机器id都被占用时抛出异常，阻止节点以重复的机器id启动
+     * @return
+     */
+    public synchronized long acquire() {
+        if (workerId != null) {
+            return workerId;
+        }
+        long total = SnowflakeIdGenerator.MAX_WORKER_ID + 1;
+        long start = Math.floorMod(stringRedisTemplate.opsForValue().increment(SEQUENCE_KEY), total);
+        for (long i = 0; i < total; i++) {
+            long candidate = (start + i) % total;
+            Boolean acquired = stringRedisTemplate.opsForValue()
+                    .setIfAbsent(KEY_PREFIX + candidate, owner, LEASE_MILLIS, TimeUnit.MILLISECONDS);
+            if (Boolean.TRUE.equals(acquired)) {
+                workerId = candidate;
+                log.info("租用雪花算法机器id：{}", candidate);
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("没有空闲的雪花算法机器id");
+    }
+
+    /**
+     * 定时续约；租约被其他节点占用时说明两个节点在使用同一个机器id，记录错误日志
+     */
+    @Scheduled(fixedDelay = 10000)
+    public void renew() {
+        Long id = workerId;
+        if (id == null) {
+            return;
+        }
+        try {
+            Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(KEY_PREFIX + id),
+                    owner, String.valueOf(LEASE_MILLIS));
+            if (renewed == null || renewed == 0) {
+                log.error("雪花算法机器id租约已被其他节点占用，机器id：{}", id);
+            }
+        } catch (Exception e) {
+            log.warn("雪花算法机器id续约失败，机器id：{}", id, e);
+        }
+    }
+
+    @PreDestroy
+    public void release() {
+        Long id = workerId;
+        if (id == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(KEY_PREFIX + id), owner);
+        } catch (Exception e) {
+            log.warn("释放雪花算法机器id租约失败，机器id：{}", id, e);
+        }
+    }
+}
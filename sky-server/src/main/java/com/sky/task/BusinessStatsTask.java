@@ -0,0 +1,34 @@
+package com.sky.task;
+
+import com.sky.service.BusinessStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Component
+@Slf4j
+public class BusinessStatsTask {
+
+    //每次校准最近几天的汇总数据
+    private static final int RECONCILE_DAYS = 7;
+
+    @Autowired
+    private BusinessStatsService businessStatsService;
+
+    /**
+     * 校准最近几天的每日营业数据汇总，修正增量维护过程中可能出现的偏差
+     */
+    @Scheduled(cron = "0 0 2 * * ?")//每天凌晨2点触发一次，在派送中订单处理完成之后
+    public void reconcileDailyStats(){
+        log.info("定时校准每日营业数据汇总:{}", LocalDateTime.now());
+
+        //当天的数据仍在增量累加，只校准到前一天
+        LocalDate end=LocalDate.now().minusDays(1);
+        LocalDate begin=end.minusDays(RECONCILE_DAYS);
+        businessStatsService.rebuild(begin,end);
+    }
+}
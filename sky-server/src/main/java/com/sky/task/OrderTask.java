@@ -2,35 +2,131 @@ package com.sky.task;
 
 import com.sky.entity.Orders;
 import com.sky.mapper.OrderMapper;
+import com.sky.queue.OrderTimeoutQueue;
+import com.sky.service.OrderService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
 @Slf4j
 public class OrderTask {
+
+    //每批取消的超时订单数量
+    private static final int TIMEOUT_BATCH_SIZE = 500;
+
     @Autowired
     private OrderMapper orderMapper;
+    @Autowired
+    private OrderTimeoutQueue orderTimeoutQueue;
+    @Autowired
+    private OrderService orderService;
 
-    public void processTimeOutOrder(){
-        log.info("定时处理超时订单:{}", LocalDateTime.now());
+    //支付超时处理使用单独的线程，不与其他定时任务共用调度线程，避免被耗时任务推迟
+    private ScheduledExecutorService timeoutExecutor;
 
-        LocalDateTime time = LocalDateTime.now().plusMinutes(-15);
+    @PostConstruct
+    public void start(){
+        AtomicInteger threadNumber=new AtomicInteger();
+        timeoutExecutor=Executors.newScheduledThreadPool(2,runnable -> {
+            Thread thread=new Thread(runnable,"order-timeout-" +threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        timeoutExecutor.execute(this::backfillTimeoutQueue);
+        timeoutExecutor.scheduleWithFixedDelay(this::processTimeOutOrder,1,1,TimeUnit.SECONDS);//上次执行结束1秒后再次触发
+    }
 
-        //select * from orders where status=? and order_time<(当前时间-15)
-        List<Orders> ordersList=orderMapper.getByStatusAndOrderTimeLT(Orders.PENDING_PAYMENT,time);
+    @PreDestroy
+    public void stop(){
+        timeoutExecutor.shutdown();
+    }
 
-        if(ordersList !=null &&ordersList.size()>0){
+    /**
+     * 把库中已有的待付款订单补登记到超时队列，启动后在后台执行，整个集群只执行一次
+     * 超时队列上线前创建的订单没有登记过，不补登记就永远不会被自动取消；重复登记只会覆盖为相同的截止时间
+     */
+    public void backfillTimeoutQueue(){
+        try {
+            if(!orderTimeoutQueue.startBackfill()){
+                return;
+            }
+        } catch (Exception e) {
+            log.error("待付款订单补登记到超时队列失败，下次启动时重试", e);
+            return;
+        }
+
+        boolean completed=false;
+        try {
+            int count=backfill();
+            completed=true;
+            log.info("待付款订单补登记到超时队列，共{}条",count);
+        } catch (Exception e) {
+            log.error("待付款订单补登记到超时队列失败，下次启动时重试", e);
+        } finally {
+            try {
+                orderTimeoutQueue.finishBackfill(completed);
+            } catch (Exception e) {
+                log.error("结束待付款订单补登记失败", e);
+            }
+        }
+    }
+
+    private int backfill(){
+        LocalDateTime now = LocalDateTime.now();
+        Long lastId = 0L;
+        int count = 0;
+        while(true){
+            List<Orders> ordersList=orderMapper.listByStatusAndOrderTimeLT(Orders.PENDING_PAYMENT,now,lastId,TIMEOUT_BATCH_SIZE);
             for (Orders orders : ordersList) {
-                orders.setStatus(Orders.CANCELLED);
-                orders.setCancelTime(LocalDateTime.now());
-                orders.setCancelReason("订单超时，自动取消");
-                orderMapper.update(orders);
+                orderTimeoutQueue.add(orders.getId(),orders.getOrderTime());
+            }
+            count+=ordersList.size();
+            if(ordersList.size()<TIMEOUT_BATCH_SIZE){
+                break;
+            }
+            lastId=ordersList.get(ordersList.size()-1).getId();
+        }
+        return count;
+    }
+
+    /**
+     * 处理支付超时的订单
+     * 从超时队列中取出已过支付截止时间的订单，批量取消
+     */
+    public void processTimeOutOrder(){
+        try {
+            cancelTimeOutOrders();
+        } catch (Exception e) {
+            //异常不能抛出，否则后续的定时执行会被取消
+            log.error("处理支付超时订单失败", e);
+        }
+    }
+
+    private void cancelTimeOutOrders(){
+        while(true){
+            List<Long> orderIds=orderTimeoutQueue.pollExpired(TIMEOUT_BATCH_SIZE);
+            if(orderIds.isEmpty()){
+                return;
+            }
+            log.info("处理支付超时订单:{}", orderIds);
+
+            //只取消仍处于待付款状态的订单，已支付或已取消的订单不受影响
+            orderMapper.cancelByIds(orderIds,Orders.PENDING_PAYMENT,Orders.CANCELLED,"订单超时，自动取消",LocalDateTime.now());
+            orderTimeoutQueue.remove(orderIds);
 
+            if(orderIds.size()<TIMEOUT_BATCH_SIZE){
+                return;
             }
         }
     }
@@ -44,13 +140,8 @@ public class OrderTask {
 
         LocalDateTime time = LocalDateTime.now().plusMinutes(-60);
 
-        List<Orders> ordersList=orderMapper.getByStatusAndOrderTimeLT(Orders.DELIVERY_IN_PROGRESS,time);
-
-        if(ordersList !=null &&ordersList.size()>0){
-            for (Orders orders : ordersList) {
-                orders.setStatus(Orders.COMPLETED);
-                orderMapper.update(orders);
-            }
-        }
+        //分批查询并批量修改为已完成
+        Integer count=orderService.completeDeliveryOrders(time);
+        log.info("派送中的订单处理完成，共{}条",count);
     }
 }
@@ -1,26 +1,96 @@
 package com.sky.websocket;
 
+import com.alibaba.fastjson.JSON;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import org.springframework.web.bind.annotation.PathVariable;
 
+import javax.websocket.CloseReason;
 import javax.websocket.OnClose;
+import javax.websocket.OnError;
 import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
 import javax.websocket.Session;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
-import java.util.Collection;
-import java.util.HashMap;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * WebSocket服务
+ * 每个会话有独立的有界发送队列，消息异步发送，发送慢或已断开的会话会被移除，不会阻塞调用方线程
+ * 消息按主题推送给订阅了该主题的会话，短时间内同一主题的消息合并处理，每条消息、每帧只序列化一次
+ * 客户端连接时通过token参数携带管理端或用户端的jwt令牌，可订阅的主题由令牌所属的端决定：管理端可订阅商家端主题，用户端目前没有可订阅的主题；
+ * 令牌无效时拒绝连接。通过topics参数选择订阅的主题，多个主题用逗号分隔，不在可订阅范围内的主题被忽略，不传时订阅所有可订阅的主题
+ * 默认每帧只包含一个消息对象；连接时携带batch=1参数的客户端会收到合并后的JSON数组帧
  */
 @Component
 @ServerEndpoint("/ws/{sid}")
+@Slf4j
 public class WebSocketServer {
+
+    //每个会话发送队列的容量，队列满说明客户端消费过慢
+    private static final int QUEUE_CAPACITY = 256;
+
+    //单条消息发送的超时时间(毫秒)
+    private static final long SEND_TIMEOUT_MILLIS = 5000;
+
+    //合并消息的时间窗口(毫秒)
+    private static final long COALESCE_WINDOW_MILLIS = 200;
+
+    //每帧最多合并的消息数量
+    private static final int MAX_BATCH_SIZE = 100;
+
+    //商家端主题：来单提醒、客户催单
+    public static final String TOPIC_MERCHANT = "merchant";
+
+    //等待合并发送的消息，按主题分组
+    private static final Map<String, Queue<Object>> pendingMessages = new ConcurrentHashMap<>();
+
+    //定时合并发送消息的线程
+    private static final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "websocket-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        flusher.scheduleWithFixedDelay(WebSocketServer::flush, COALESCE_WINDOW_MILLIS, COALESCE_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    //会话对象由WebSocket容器创建，不是spring管理的bean，校验令牌使用的配置通过静态字段共享
+    private static volatile JwtProperties jwtProperties;
+
     //存放会话对象
-    private static Map<String, Session> sessionMap=new HashMap();
+    private static final Map<String, ClientSession> sessionMap = new ConcurrentHashMap<>();
+
+    //因发送队列已满而丢弃的消息数量
+    private static final AtomicLong droppedMessages = new AtomicLong();
+
+    //被移除的慢会话、断开会话数量
+    private static final AtomicLong evictedSessions = new AtomicLong();
+
+    @Autowired
+    public void setJwtProperties(JwtProperties jwtProperties) {
+        WebSocketServer.jwtProperties = jwtProperties;
+    }
 
     /**
      * 连接建立成功调用的方法
@@ -28,9 +98,22 @@ public class WebSocketServer {
      * @param sid
      */
     @OnOpen
-    public void onOpen(Session session, @PathParam("sid") String sid){
-        System.out.println("客户端: "+sid+"建立连接");
-        sessionMap.put(sid,session);
+    public void onOpen(Session session, @PathParam("sid") String sid) throws IOException {
+        Set<String> allowedTopics = allowedTopics(session);
+        if (allowedTopics == null) {
+            log.info("客户端：{}的令牌无效，拒绝连接", sid);
+            session.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY, "unauthorized"));
+            return;
+        }
+        Set<String> topics = parseTopics(session, allowedTopics);
+        boolean batch = parseBatch(session);
+        log.info("客户端：{}建立连接，订阅主题：{}，合并帧：{}", sid, topics, batch);
+        session.getAsyncRemote().setSendTimeout(SEND_TIMEOUT_MILLIS);
+        ClientSession previous = sessionMap.put(sid, new ClientSession(sid, session, topics, batch));
+        if (previous != null) {
+            //同一客户端重复连接，关闭旧连接
+            previous.close();
+        }
     }
 
     /**
@@ -40,32 +123,272 @@ public class WebSocketServer {
      */
     @OnMessage
     public void onMessage(String message,@PathParam("sid") String sid){
-        System.out.println("收到来自客户端: "+sid+"的信息"+message);
+        log.info("收到来自客户端：{}的信息：{}", sid, message);
     }
 
 
     /**
      * 连接关闭调用的方法
+     * @param session
      * @param sid
      */
     @OnClose
-    public void onClose(@PathParam("sid") String sid){
-        System.out.println("连接断开: "+sid);
-        sessionMap.remove(sid);
+    public void onClose(Session session, @PathParam("sid") String sid){
+        log.info("连接断开：{}", sid);
+        //只移除当前连接，避免误删同一客户端重新建立的连接
+        sessionMap.computeIfPresent(sid, (key, client) -> client.session == session ? null : client);
+    }
+
+    /**
+     * 连接异常调用的方法
+     * @param session
+     * @param sid
+     * @param throwable
+     */
+    @OnError
+    public void onError(Session session, @PathParam("sid") String sid, Throwable throwable){
+        log.warn("连接异常：{}，{}", sid, throwable.getMessage());
+        ClientSession client = sessionMap.get(sid);
+        if (client != null && client.session == session) {
+            evict(client);
+        }
+    }
+
+    /**
+     * 向订阅了指定主题的客户端推送消息，消息在合并窗口结束时发送，调用方立即返回
+     * 默认每条消息单独成帧；订阅了合并帧的客户端在窗口内有多条消息时收到JSON数组
+     * @param topic 主题
+     * @param message 消息对象，发送时序列化为JSON
+     */
+    public void sendToTopic(String topic, Object message){
+        pendingMessages.computeIfAbsent(topic, key -> new ConcurrentLinkedQueue<>()).offer(message);
+    }
+
+    /**
+     * 当前连接的会话数量
+     * @return
+     */
+    public int getSessionCount() {
+        return sessionMap.size();
+    }
+
+    /**
+     * 所有会话发送队列中等待发送的消息数量
+     * @return
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (ClientSession client : sessionMap.values()) {
+            depth += client.queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * 因发送队列已满而丢弃的消息数量
+     * @return
+     */
+    public long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    /**
+     * 被移除的慢会话、断开会话数量
+     * @return
+     */
+    public long getEvictedSessions() {
+        return evictedSessions.get();
+    }
+
+    /**
+     * 合并各主题等待发送的消息，每帧序列化一次后放入订阅会话的发送队列
+     */
+    private static void flush() {
+        try {
+            pendingMessages.forEach((topic, messages) -> {
+                while (!messages.isEmpty()) {
+                    List<Object> batch = new ArrayList<>();
+                    Object message;
+                    while (batch.size() < MAX_BATCH_SIZE && (message = messages.poll()) != null) {
+                        batch.add(message);
+                    }
+                    if (batch.isEmpty()) {
+                        return;
+                    }
+
+                    //每条消息只序列化一次，合并帧只在有多条消息时生成一次
+                    List<String> frames = new ArrayList<>(batch.size());
+                    for (Object item : batch) {
+                        frames.add(JSON.toJSONString(item));
+                    }
+                    String batchFrame = frames.size() == 1 ? frames.get(0) : "[" + String.join(",", frames) + "]";
+
+                    for (ClientSession client : sessionMap.values()) {
+                        if (!client.topics.contains(topic)) {
+                            continue;
+                        }
+                        if (client.batch) {
+                            client.offer(batchFrame);
+                        } else {
+                            for (String frame : frames) {
+                                client.offer(frame);
+                            }
+                        }
+                    }
+                }
+            });
+        } catch (Exception e) {
+            log.error("WebSocket消息发送失败", e);
+        }
+    }
+
+    /**
+     * 根据连接携带的令牌确定客户端可订阅的主题
+     * @param session
+     * @return 令牌无效时返回null
+     */
+    private static Set<String> allowedTopics(Session session) {
+        List<String> values = session.getRequestParameterMap().get("token");
+        JwtProperties properties = jwtProperties;
+        if (values == null || values.isEmpty() || properties == null) {
+            return null;
+        }
+        String token = values.get(0);
+        if (isValid(properties.getAdminSecretKey(), token)) {
+            return Collections.singleton(TOPIC_MERCHANT);
+        }
+        if (isValid(properties.getUserSecretKey(), token)) {
+            return Collections.emptySet();
+        }
+        return null;
+    }
+
+    private static boolean isValid(String secretKey, String token) {
+        try {
+            JwtUtil.parseJWT(secretKey, token);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 解析客户端订阅的主题，只保留可订阅的主题
+     * @param session
+     * @param allowedTopics 可订阅的主题
+     * @return
+     */
+    private static Set<String> parseTopics(Session session, Set<String> allowedTopics) {
+        List<String> values = session.getRequestParameterMap().get("topics");
+        if (values == null || values.isEmpty()) {
+            return allowedTopics;
+        }
+        Set<String> topics = new HashSet<>();
+        for (String value : values) {
+            for (String topic : value.split(",")) {
+                if (allowedTopics.contains(topic.trim())) {
+                    topics.add(topic.trim());
+                }
+            }
+        }
+        return topics;
     }
 
     /**
-     * 群发
-     * @param message
+     * 解析客户端是否接收合并后的JSON数组帧，只有batch=1时接收
+     * @param session
+     * @return
+     */
+    private static boolean parseBatch(Session session) {
+        List<String> values = session.getRequestParameterMap().get("batch");
+        return values != null && values.contains("1");
+    }
+
+    /**
+     * 移除并关闭会话
+     * @param client
+     */
+    private static void evict(ClientSession client) {
+        if (sessionMap.remove(client.sid, client)) {
+            evictedSessions.incrementAndGet();
+            log.warn("移除WebSocket会话：{}，未发送消息：{}条", client.sid, client.queue.size());
+            client.close();
+        }
+    }
+
+    /**
+     * 会话及其发送队列，同一会话同时只有一条消息在异步发送
      */
-    public void sendTOAllClient(String message){
-        Collection<Session> sessions=sessionMap.values();
-        for (Session session : sessions) {
+    private static class ClientSession {
+        private final String sid;
+        private final Session session;
+        //订阅的主题
+        private final Set<String> topics;
+        //是否接收合并后的JSON数组帧
+        private final boolean batch;
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        //是否有消息正在发送
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        private ClientSession(String sid, Session session, Set<String> topics, boolean batch) {
+            this.sid = sid;
+            this.session = session;
+            this.topics = topics;
+            this.batch = batch;
+        }
+
+        private void offer(String message) {
+            if (!session.isOpen()) {
+                evict(this);
+                return;
+            }
+            if (!queue.offer(message)) {
+                //客户端消费过慢，丢弃消息并移除会话，客户端重连后恢复
+                droppedMessages.incrementAndGet();
+                evict(this);
+                return;
+            }
+            sendNext();
+        }
+
+        private void sendNext() {
+            while (sending.compareAndSet(false, true)) {
+                String message = queue.poll();
+                if (message != null) {
+                    send(message);
+                    return;
+                }
+                sending.set(false);
+                //释放发送标记后可能有新消息入队，重新检查
+                if (queue.isEmpty()) {
+                    return;
+                }
+            }
+        }
+
+        private void send(String message) {
+            try {
+                session.getAsyncRemote().sendText(message, result -> {
+                    if (!result.isOK()) {
+                        log.warn("WebSocket消息发送失败：{}，{}", sid, result.getException().getMessage());
+                        evict(this);
+                        return;
+                    }
+                    sending.set(false);
+                    sendNext();
+                });
+            } catch (RuntimeException e) {
+                log.warn("WebSocket消息发送失败：{}，{}", sid, e.getMessage());
+                evict(this);
+            }
+        }
+
+        private void close() {
+            queue.clear();
             try {
-                //服务器向客户端发送消息
-                session.getBasicRemote().sendText(message);
-            } catch (Exception e){
-                e.printStackTrace();
+                session.close(new CloseReason(CloseReason.CloseCodes.GOING_AWAY, "evicted"));
+            } catch (IOException | RuntimeException e) {
+                log.debug("关闭WebSocket会话失败：{}", sid, e);
             }
         }
     }
@@ -0,0 +1,2 @@
+-- 订单搜索游标分页按(order_time,id)定位和排序
+create index idx_orders_order_time_id on orders (order_time, id);
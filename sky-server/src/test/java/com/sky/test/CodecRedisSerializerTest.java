@@ -0,0 +1,51 @@
+package com.sky.test;
+
+
+import com.sky.cache.CodecRedisSerializer;
+import com.sky.cache.SmileValueCodec;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CodecRedisSerializerTest {
+
+    /**
+     * smile编码、压缩后能还原菜品列表
+     */
+    @Test
+    public void testDishListRoundTrip(){
+        CodecRedisSerializer serializer=new CodecRedisSerializer(new SmileValueCodec(),1024);
+        List<DishVO> menu=RedisValueCodecBenchmark.menu(40);
+
+        byte[] bytes=serializer.serialize(menu);
+        Object value=serializer.deserialize(bytes);
+
+        assertEquals(menu,value);
+        assertTrue(bytes.length<new JdkSerializationRedisSerializer().serialize(menu).length);
+    }
+
+    /**
+     * 店铺营业状态等简单类型编码后类型不变
+     */
+    @Test
+    public void testIntegerRoundTrip(){
+        CodecRedisSerializer serializer=new CodecRedisSerializer(new SmileValueCodec(),1024);
+        assertEquals(1,serializer.deserialize(serializer.serialize(1)));
+    }
+
+    /**
+     * 切换编码前写入的java序列化数据仍能读取
+     */
+    @Test
+    public void testReadJdkSerializedValue(){
+        CodecRedisSerializer serializer=new CodecRedisSerializer(new SmileValueCodec(),1024);
+        List<DishVO> menu=RedisValueCodecBenchmark.menu(10);
+
+        byte[] bytes=new JdkSerializationRedisSerializer().serialize(menu);
+        assertEquals(menu,serializer.deserialize(bytes));
+    }
+}
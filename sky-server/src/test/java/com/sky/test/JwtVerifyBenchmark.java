@@ -0,0 +1,79 @@
+package com.sky.test;
+
+
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.interceptor.VerifiedTokenCache;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * jwt令牌校验耗时基准测试：每次请求重新校验(原实现) vs 预先转换秘钥 vs 已校验令牌缓存
+ * 运行方式：执行main方法
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtVerifyBenchmark {
+
+    private static final String SECRET_KEY="itheima";
+
+    private String token;
+
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Setup
+    public void setup(){
+        Map<String,Object> claims=new HashMap<>();
+        claims.put(JwtClaimsConstant.USER_ID,10086L);
+        token=JwtUtil.createJWT(SECRET_KEY,7200000,claims);
+        verifiedTokenCache=new VerifiedTokenCache(SECRET_KEY,10000);
+        verifiedTokenCache.verify(token);
+    }
+
+    /**
+     * 原实现：每次把秘钥转换为字节数组并完整校验
+     */
+    @Benchmark
+    public Claims parseWithRawKey(){
+        return Jwts.parser()
+                .setSigningKey(SECRET_KEY.getBytes(StandardCharsets.UTF_8))
+                .parseClaimsJws(token).getBody();
+    }
+
+    /**
+     * 使用预先转换好的签名Key完整校验
+     */
+    @Benchmark
+    public Claims parseWithSigningKey(){
+        return JwtUtil.parseJWT(SECRET_KEY,token);
+    }
+
+    /**
+     * 命中已校验令牌缓存
+     */
+    @Benchmark
+    public Claims verifyCached(){
+        return verifiedTokenCache.verify(token);
+    }
+
+    public static void main(String[] args) throws Exception{
+        Options options=new OptionsBuilder()
+                .include(JwtVerifyBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,133 @@
+package com.sky.test;
+
+
+import com.github.pagehelper.PageHelper;
+import com.sky.dto.OrdersPageQueryDTO;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.result.PageResult;
+import com.sky.service.OrderService;
+import com.sky.vo.OrderVO;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+public class OrderDetailBatchQueryTest {
+
+    //计时前的预热次数和计时的次数
+    private static final int WARMUP_ROUNDS=5;
+    private static final int MEASURE_ROUNDS=20;
+
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private OrderMapper orderMapper;
+    @SpyBean
+    private OrderDetailMapper orderDetailMapper;
+
+    /**
+     * 订单分页查询只执行1次明细查询，每个订单的菜品信息与逐条查询明细的结果一致
+     */
+    @Test
+    public void testBatchMatchesPerOrder(){
+        int[] pageSizes={10,50,200};
+        for (int pageSize : pageSizes) {
+            OrdersPageQueryDTO ordersPageQueryDTO=new OrdersPageQueryDTO();
+            ordersPageQueryDTO.setPage(1);
+            ordersPageQueryDTO.setPageSize(pageSize);
+
+            clearInvocations(orderDetailMapper);
+            PageResult pageResult=orderService.conditionSearch(ordersPageQueryDTO);
+            List<OrderVO> orderVOList=(List<OrderVO>) pageResult.getRecords();
+
+            //批量查询：整页只查询1次明细，不逐条查询
+            int expectedQueries=orderVOList.isEmpty() ?0 :1;
+            verify(orderDetailMapper,times(expectedQueries)).getByOrderIds(anyList());
+            verify(orderDetailMapper,never()).getByOrderId(any());
+
+            //逐条查询每个订单的明细，与批量查询得到的菜品信息对比
+            for (OrderVO orderVO : orderVOList) {
+                List<String> expected=orderDetailMapper.getByOrderId(orderVO.getId()).stream()
+                        .map(x -> x.getName() +"*" +x.getNumber())
+                        .sorted()
+                        .collect(Collectors.toList());
+                assertEquals(expected,dishLines(orderVO.getOrderDishes()),"订单" +orderVO.getId() +"的菜品信息不一致");
+            }
+        }
+    }
+
+    /**
+     * 对比订单分页查询时逐条查询明细与批量查询明细的查询次数和平均耗时，只输出不断言
+     * 耗时受数据库和机器性能影响，默认构建不运行，使用 mvn test -Pperf 运行
+     */
+    @Test
+    @Tag("perf")
+    public void testBatchVsPerOrderLatency(){
+        int[] pageSizes={10,50,200};
+        for (int pageSize : pageSizes) {
+            PageHelper.startPage(1,pageSize);
+            List<Orders> ordersList=orderMapper.pageQuery(new OrdersPageQueryDTO()).getResult();
+            List<Long> orderIds=ordersList.stream().map(Orders::getId).collect(Collectors.toList());
+            if(orderIds.isEmpty()){
+                System.out.println("pageSize=" +pageSize +" 没有订单数据");
+                continue;
+            }
+
+            //逐条查询：1次分页查询 + n次明细查询
+            long perOrderCost=measure(() -> orderIds.forEach(orderDetailMapper::getByOrderId));
+            //批量查询：1次分页查询 + 1次明细查询
+            long batchCost=measure(() -> orderDetailMapper.getByOrderIds(orderIds).stream()
+                    .collect(Collectors.groupingBy(OrderDetail::getOrderId)));
+
+            System.out.println("pageSize=" +pageSize +" 订单数=" +orderIds.size());
+            System.out.println("  逐条查询: 查询次数=" +(orderIds.size()+1) +" 平均耗时(ms)=" +perOrderCost/1_000_000.0);
+            System.out.println("  批量查询: 查询次数=2 平均耗时(ms)=" +batchCost/1_000_000.0);
+        }
+    }
+
+    /**
+     * 预热后多次执行，返回平均耗时(纳秒)
+     * @param runnable
+     * @return
+     */
+    private long measure(Runnable runnable){
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runnable.run();
+        }
+        long start=System.nanoTime();
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            runnable.run();
+        }
+        return (System.nanoTime()-start)/MEASURE_ROUNDS;
+    }
+
+    /**
+     * 将菜品信息字符串(宫保鸡丁*3;)拆分为排序后的明细行
+     * @param orderDishes
+     * @return
+     */
+    private List<String> dishLines(String orderDishes){
+        if(orderDishes ==null || orderDishes.isEmpty()){
+            return Collections.emptyList();
+        }
+        List<String> lines=new ArrayList<>(Arrays.asList(orderDishes.split(";")));
+        Collections.sort(lines);
+        return lines;
+    }
+}
@@ -0,0 +1,119 @@
+package com.sky.test;
+
+
+import com.sky.cart.ShoppingCartStore;
+import com.sky.constant.StatusConstant;
+import com.sky.context.BaseContext;
+import com.sky.dto.OrdersSubmitDTO;
+import com.sky.entity.AddressBook;
+import com.sky.entity.Dish;
+import com.sky.mapper.AddressBookMapper;
+import com.sky.mapper.DishMapper;
+import com.sky.service.OrderService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 下单吞吐量压测，默认构建不运行，使用 mvn test -Pperf 运行
+ * 使用perf配置中单独的数据库和redis库，产生的订单不会进入开发库和营业数据汇总
+ */
+@Tag("perf")
+@ActiveProfiles({"dev","perf"})
+@SpringBootTest
+public class OrderSubmitThroughputTest {
+
+    //并发下单的用户数量
+    private static final int SUBMITTERS=200;
+    //测试用户id的起始值，避免与真实用户冲突
+    private static final long BASE_USER_ID=900_000L;
+
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private AddressBookMapper addressBookMapper;
+    @Autowired
+    private ShoppingCartStore shoppingCartStore;
+    @Autowired
+    private DishMapper dishMapper;
+
+    /**
+     * 200个用户同时下单，全部成功，输出下单吞吐量
+     */
+    @Test
+    public void testConcurrentSubmit() throws InterruptedException {
+        Dish dish=dishMapper.listAll().stream()
+                .filter(d -> StatusConstant.ENABLE.equals(d.getStatus()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("没有起售中的菜品"));
+
+        //每个用户准备1个地址和1条购物车数据
+        AddressBook addressBook=AddressBook.builder()
+                .userId(BASE_USER_ID)
+                .consignee("压测")
+                .phone("13800000000")
+                .sex("1")
+                .detail("压测地址")
+                .isDefault(0)
+                .build();
+        addressBookMapper.insert(addressBook);
+        Long addressBookId=addressBookMapper.list(AddressBook.builder().userId(BASE_USER_ID).build()).get(0).getId();
+
+        for (int i = 0; i < SUBMITTERS; i++) {
+            shoppingCartStore.increment(BASE_USER_ID+i,dish.getId(),null,null,1);
+        }
+
+        ExecutorService executorService=Executors.newFixedThreadPool(SUBMITTERS);
+        CountDownLatch ready=new CountDownLatch(SUBMITTERS);
+        CountDownLatch go=new CountDownLatch(1);
+        CountDownLatch done=new CountDownLatch(SUBMITTERS);
+        AtomicInteger succeeded=new AtomicInteger();
+        for (int i = 0; i < SUBMITTERS; i++) {
+            long userId=BASE_USER_ID+i;
+            executorService.execute(() -> {
+                BaseContext.setCurrentId(userId);
+                OrdersSubmitDTO ordersSubmitDTO=new OrdersSubmitDTO();
+                ordersSubmitDTO.setAddressBookId(addressBookId);
+                ordersSubmitDTO.setPayMethod(1);
+                ordersSubmitDTO.setDeliveryStatus(1);
+                ordersSubmitDTO.setTablewareStatus(1);
+                ordersSubmitDTO.setTablewareNumber(0);
+                ready.countDown();
+                try {
+                    go.await();
+                    orderService.submitOrder(ordersSubmitDTO);
+                    succeeded.incrementAndGet();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    BaseContext.removeCurrentId();
+                    done.countDown();
+                }
+            });
+        }
+
+        ready.await();
+        long start=System.nanoTime();
+        go.countDown();
+        done.await();
+        long cost=System.nanoTime()-start;
+        executorService.shutdown();
+
+        addressBookMapper.deleteById(addressBookId);
+
+        //吞吐量受机器性能影响，只输出不断言
+        double throughput=succeeded.get()*1_000_000_000.0/cost;
+        System.out.println("并发下单用户数=" +SUBMITTERS +" 成功=" +succeeded.get());
+        System.out.println("  总耗时(ms)=" +cost/1_000_000.0 +" 吞吐量(单/秒)=" +throughput);
+        assertEquals(SUBMITTERS,succeeded.get());
+    }
+}
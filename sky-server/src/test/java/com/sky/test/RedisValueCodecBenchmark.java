@@ -0,0 +1,115 @@
+package com.sky.test;
+
+
+import com.sky.cache.CodecRedisSerializer;
+import com.sky.cache.JdkValueCodec;
+import com.sky.cache.SmileValueCodec;
+import com.sky.entity.DishFlavor;
+import com.sky.vo.DishVO;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 菜品列表缓存值编码基准测试，对比java序列化、smile、smile+压缩的编码后字节数和编解码耗时
+ * 运行方式：执行main方法
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RedisValueCodecBenchmark {
+
+    //一个分类下的菜品数量
+    @Param({"10", "40"})
+    public int dishCount;
+
+    @Param({"jdk", "smile", "smile-compress"})
+    public String codec;
+
+    private RedisSerializer<Object> serializer;
+
+    private List<DishVO> menu;
+
+    private byte[] encoded;
+
+    @Setup
+    public void setup(){
+        serializer=createSerializer(codec);
+        menu=menu(dishCount);
+        encoded=serializer.serialize(menu);
+        System.out.println();
+        System.out.println("codec=" +codec +" dishCount=" +dishCount +" 编码后字节数=" +encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode(){
+        return serializer.serialize(menu);
+    }
+
+    @Benchmark
+    public Object decode(){
+        return serializer.deserialize(encoded);
+    }
+
+    public static RedisSerializer<Object> createSerializer(String codec){
+        switch (codec){
+            case "jdk":
+                return new JdkSerializationRedisSerializer();
+            case "smile":
+                return new CodecRedisSerializer(new SmileValueCodec(),0);
+            case "smile-compress":
+                return new CodecRedisSerializer(new SmileValueCodec(),1024);
+            case "jdk-compress":
+                return new CodecRedisSerializer(new JdkValueCodec(),1024);
+            default:
+                throw new IllegalArgumentException(codec);
+        }
+    }
+
+    /**
+     * 构造一个分类下的菜品列表，每个菜品带2个口味
+     * @param dishCount
+     * @return
+     */
+    public static List<DishVO> menu(int dishCount){
+        List<DishVO> list=new ArrayList<>();
+        for (int i = 0; i < dishCount; i++) {
+            long dishId=100+i;
+            List<DishFlavor> flavors=new ArrayList<>(Arrays.asList(
+                    DishFlavor.builder().id(dishId*10+1).dishId(dishId).name("辣度").value("[\"不辣\",\"微辣\",\"中辣\",\"重辣\"]").build(),
+                    DishFlavor.builder().id(dishId*10+2).dishId(dishId).name("忌口").value("[\"不要葱\",\"不要蒜\",\"不要香菜\",\"不要辣\"]").build()));
+            list.add(DishVO.builder()
+                    .id(dishId)
+                    .name("招牌菜品" +i)
+                    .categoryId(16L)
+                    .price(new BigDecimal("38.00").add(BigDecimal.valueOf(i)))
+                    .image("https://sky-take-out.oss-cn-beijing.aliyuncs.com/" +dishId +"-a7b3c9d2-4e5f-6a7b-8c9d-0e1f2a3b4c5d.png")
+                    .description("精选食材，现点现做，口味鲜香" +i)
+                    .status(1)
+                    .updateTime(LocalDateTime.of(2022,6,9,22,40,47))
+                    .flavors(flavors)
+                    .build());
+        }
+        return list;
+    }
+
+    public static void main(String[] args) throws Exception{
+        Options options=new OptionsBuilder()
+                .include(RedisValueCodecBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,49 @@
+package com.sky.test;
+
+
+import com.sky.utils.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 雪花算法id生成器吞吐量基准测试
+ * 运行方式：执行main方法
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnowflakeIdGeneratorBenchmark {
+
+    private SnowflakeIdGenerator generator;
+
+    @Setup
+    public void setup(){
+        generator=new SnowflakeIdGenerator(1,5000);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long nextIdSingleThread(){
+        return generator.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long nextIdEightThreads(){
+        return generator.nextId();
+    }
+
+    public static void main(String[] args) throws Exception{
+        Options options=new OptionsBuilder()
+                .include(SnowflakeIdGeneratorBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
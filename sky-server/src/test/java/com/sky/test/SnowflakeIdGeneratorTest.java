@@ -0,0 +1,80 @@
+package com.sky.test;
+
+
+import com.sky.utils.SnowflakeIdGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnowflakeIdGeneratorTest {
+
+    /**
+     * 多线程并发生成的id不重复
+     */
+    @Test
+    public void testConcurrentUnique() throws Exception{
+        SnowflakeIdGenerator generator=new SnowflakeIdGenerator(1,5000);
+        int threads=16;
+        int perThread=50000;
+        Set<Long> ids=ConcurrentHashMap.newKeySet();
+
+        ExecutorService executor=Executors.newFixedThreadPool(threads);
+        CountDownLatch latch=new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(()->{
+                for (int j = 0; j < perThread; j++) {
+                    ids.add(generator.nextId());
+                }
+                latch.countDown();
+            });
+        }
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(threads*perThread,ids.size());
+    }
+
+    /**
+     * 单线程内生成的id单调递增，并带有机器id
+     */
+    @Test
+    public void testMonotonic(){
+        SnowflakeIdGenerator generator=new SnowflakeIdGenerator(1023,5000);
+        long last=generator.nextId();
+        for (int i = 0; i < 100000; i++) {
+            long id=generator.nextId();
+            assertTrue(id>last);
+            assertEquals(1023,(id>>12)&1023);
+            last=id;
+        }
+    }
+
+    /**
+     * 小范围时钟回拨时继续单调生成，超出允许范围时拒绝生成
+     */
+    @Test
+    public void testClockBackward(){
+        long[] now={System.currentTimeMillis()};
+        SnowflakeIdGenerator generator=new SnowflakeIdGenerator(1,100){
+            @Override
+            protected long currentTimeMillis() {
+                return now[0];
+            }
+        };
+
+        long before=generator.nextId();
+        now[0]-=50;
+        long afterSmallBackward=generator.nextId();
+        assertTrue(afterSmallBackward>before);
+
+        now[0]-=1000;
+        assertThrows(IllegalStateException.class,generator::nextId);
+    }
+}
@@ -0,0 +1,193 @@
+package com.sky.test;
+
+
+import com.sky.cache.CacheEntry;
+import com.sky.cache.CodecRedisSerializer;
+import com.sky.cache.SmileValueCodec;
+import com.sky.cache.TwoLevelCache;
+import com.sky.cache.TwoLevelCacheManager;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class TwoLevelCacheSingleFlightTest {
+
+    //用内存map模拟redis
+    private final Map<String, Object> redis=new ConcurrentHashMap<>();
+
+    /**
+     * 冷key被大量请求同时访问时只查询一次数据库，所有请求拿到同一份结果
+     */
+    @Test
+    public void testColdKeyLoadsOnce() throws Exception {
+        TwoLevelCache cache=createCache("dish",Duration.ofHours(1));
+        AtomicInteger dbLoads=new AtomicInteger();
+        List<DishVO> menu=RedisValueCodecBenchmark.menu(40);
+
+        int threads=200;
+        ExecutorService executor=Executors.newFixedThreadPool(threads);
+        CountDownLatch start=new CountDownLatch(1);
+        List<Future<Object>> results=new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return cache.get("dish_1",() -> {
+                    dbLoads.incrementAndGet();
+                    sleep(100);
+                    return menu;
+                });
+            }));
+        }
+        start.countDown();
+        for (Future<Object> result : results) {
+            assertEquals(menu,result.get(10,TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        System.out.println("并发请求数=" +threads +" 数据库查询次数=" +dbLoads.get()
+                +" 等待次数=" +cache.getCoalescedLoads());
+        assertEquals(1,dbLoads.get());
+        assertEquals(1,cache.getLoads());
+        assertTrue(redis.get("dish_1") instanceof CacheEntry);
+    }
+
+    /**
+     * 临近过期时返回旧值，并在后台提前刷新一次
+     */
+    @Test
+    public void testEarlyRefresh() throws Exception {
+        TwoLevelCache cache=createCache("dishEarly",Duration.ofMillis(200));
+        AtomicInteger dbLoads=new AtomicInteger();
+
+        assertEquals(1,cache.get("dish_2",() -> dbLoads.incrementAndGet()));
+
+        //超过redis有效时间后本地缓存仍然存在，此时必然触发提前刷新
+        Thread.sleep(300);
+        assertEquals(1,cache.get("dish_2",() -> dbLoads.incrementAndGet()));
+
+        long deadline=System.currentTimeMillis()+5000;
+        while (cache.get("dish_2").equals(1) && System.currentTimeMillis()<deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2,cache.get("dish_2"));
+        assertEquals(2,dbLoads.get());
+        assertEquals(1,cache.getEarlyRefreshes());
+    }
+
+    /**
+     * 删除缓存前开始的慢加载不会在删除后写入旧数据，删除后的并发未命中只等待一次重新加载
+     */
+    @Test
+    public void testEvictAndReloadDropsStaleLoad() throws Exception {
+        TwoLevelCache cache=createCache("dishReload",Duration.ofHours(1));
+        CountDownLatch oldLoadStarted=new CountDownLatch(1);
+        CountDownLatch releaseOldLoad=new CountDownLatch(1);
+        AtomicInteger newLoads=new AtomicInteger();
+
+        //管理端修改前开始的查询，读到的是旧数据
+        ExecutorService executor=Executors.newFixedThreadPool(9);
+        Future<Object> oldResult=executor.submit(() -> cache.get("dish_3",() -> {
+            oldLoadStarted.countDown();
+            await(releaseOldLoad);
+            return "old";
+        }));
+        oldLoadStarted.await();
+
+        //修改提交后删除并重新加载
+        CountDownLatch releaseNewLoad=new CountDownLatch(1);
+        cache.evictAndReload("dish_3",() -> {
+            newLoads.incrementAndGet();
+            await(releaseNewLoad);
+            return "new";
+        });
+
+        //重新加载完成前的未命中请求等待同一个加载任务
+        List<Future<Object>> results=new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> cache.get("dish_3",() -> {
+                newLoads.incrementAndGet();
+                return "new";
+            })));
+        }
+        Thread.sleep(100);
+        releaseOldLoad.countDown();
+        assertEquals("old",oldResult.get(5,TimeUnit.SECONDS));
+        releaseNewLoad.countDown();
+        for (Future<Object> result : results) {
+            assertEquals("new",result.get(5,TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        assertEquals(1,newLoads.get());
+        assertEquals("new",cache.get("dish_3"));
+        assertEquals("new",((CacheEntry) redis.get("dish_3")).getValue());
+    }
+
+    private TwoLevelCache createCache(String name, Duration redisTtl) {
+        CodecRedisSerializer serializer=new CodecRedisSerializer(new SmileValueCodec(),1024);
+        ValueOperations valueOperations=mock(ValueOperations.class);
+        //按redis的序列化方式保存，保证缓存条目能被编码
+        when(valueOperations.get(anyString())).thenAnswer(invocation -> {
+            byte[] bytes=(byte[]) redis.get("raw:" +invocation.getArgument(0));
+            return bytes==null ?null :serializer.deserialize(bytes);
+        });
+        doAnswer(invocation -> {
+            redis.put("raw:" +invocation.getArgument(0),serializer.serialize(invocation.getArgument(1)));
+            redis.put(invocation.getArgument(0),invocation.getArgument(1));
+            return null;
+        }).when(valueOperations).set(anyString(),any(),anyLong(),any(TimeUnit.class));
+        RedisTemplate redisTemplate=mock(RedisTemplate.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.delete(anyCollection())).thenAnswer(invocation -> {
+            for (Object key : (Collection<?>) invocation.getArgument(0)) {
+                redis.remove(key);
+                redis.remove("raw:" +key);
+            }
+            return 1L;
+        });
+
+        TwoLevelCacheManager manager=new TwoLevelCacheManager();
+        ReflectionTestUtils.setField(manager,"cacheRedisTemplate",redisTemplate);
+        ReflectionTestUtils.setField(manager,"stringRedisTemplate",mock(StringRedisTemplate.class));
+        return manager.getCache(name,1000,Duration.ofMinutes(5),redisTtl);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.sky.test;
+
+
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.interceptor.VerifiedTokenCache;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.SignatureException;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VerifiedTokenCacheTest {
+
+    private static final String SECRET_KEY="itheima";
+
+    /**
+     * 同一令牌第二次校验直接返回缓存的claims
+     */
+    @Test
+    public void testCachedVerify(){
+        VerifiedTokenCache cache=new VerifiedTokenCache(SECRET_KEY,100);
+        String token=createToken(10086L,60000);
+
+        Claims first=cache.verify(token);
+        Claims second=cache.verify(token);
+
+        assertEquals("10086",first.get(JwtClaimsConstant.USER_ID).toString());
+        assertSame(first,second);
+        assertEquals(1,cache.size());
+    }
+
+    /**
+     * 篡改签名或使用其他秘钥签发的令牌校验失败，且不会被缓存
+     */
+    @Test
+    public void testInvalidSignature(){
+        VerifiedTokenCache cache=new VerifiedTokenCache(SECRET_KEY,100);
+        String token=createToken(10086L,60000);
+        cache.verify(token);
+
+        String tampered=token.substring(0,token.length()-2)+(token.endsWith("AA") ?"BB" :"AA");
+        assertThrows(SignatureException.class,() -> cache.verify(tampered));
+
+        Map<String,Object> claims=new HashMap<>();
+        claims.put(JwtClaimsConstant.USER_ID,1L);
+        String otherKeyToken=JwtUtil.createJWT("itcast",60000,claims);
+        assertThrows(SignatureException.class,() -> cache.verify(otherKeyToken));
+        assertEquals(1,cache.size());
+    }
+
+    /**
+     * 令牌过期后即使已缓存也校验失败
+     */
+    @Test
+    public void testExpiredToken() throws InterruptedException {
+        VerifiedTokenCache cache=new VerifiedTokenCache(SECRET_KEY,100);
+        //jwt的过期时间精确到秒
+        String token=createToken(10086L,3000);
+        cache.verify(token);
+
+        Thread.sleep(3500);
+        assertThrows(ExpiredJwtException.class,() -> cache.verify(token));
+    }
+
+    private String createToken(Long userId, long ttlMillis){
+        Map<String,Object> claims=new HashMap<>();
+        claims.put(JwtClaimsConstant.USER_ID,userId);
+        return JwtUtil.createJWT(SECRET_KEY,ttlMillis,claims);
+    }
+}